@@ -0,0 +1,36 @@
+package org.sunbird.sync.bench;
+
+import org.json.JSONException;
+import org.sunbird.db.SunbirdDBHelper;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The SQLite database the plugin's DbServiceImpl works against, in a temporary file. It is opened
+ * once per JVM, since DbServiceImpl upgrades the network_queue schema only once per process, and
+ * emptied between runs instead.
+ */
+public final class BenchDatabase {
+
+    private static File sFile;
+
+    private BenchDatabase() {
+    }
+
+    public static synchronized void open() throws IOException {
+        if (sFile != null) {
+            return;
+        }
+        sFile = File.createTempFile("sync-bench", ".db");
+        sFile.deleteOnExit();
+        new File(sFile.getPath() + "-wal").deleteOnExit();
+        new File(sFile.getPath() + "-shm").deleteOnExit();
+        SunbirdDBHelper.open(sFile.getPath());
+    }
+
+    public static void clear() throws JSONException {
+        SunbirdDBHelper.getInstance().operator(false).execute("DELETE FROM network_queue");
+        SunbirdDBHelper.getInstance().operator(false).execute("DELETE FROM no_sql");
+    }
+}
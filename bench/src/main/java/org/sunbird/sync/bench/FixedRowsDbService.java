@@ -0,0 +1,97 @@
+package org.sunbird.sync.bench;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.sunbird.sync.db.DbService;
+import org.sunbird.sync.model.NetworkQueueModel;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A DbService answering the reads NetworkQueueImpl makes while seeding and loading requests with
+ * rows built up front, so benchmarks of those paths time the plugin's own JSON handling and not
+ * SQLite. Writes are not supported.
+ */
+public class FixedRowsDbService implements DbService {
+
+    private final String type;
+    private final JSONArray seedPage;
+    private final JSONObject requestRow;
+
+    /**
+     * seedPage holds the rows of one type as DbServiceImpl.seed returns them; requestRow is returned
+     * for every msg_id, as DbServiceImpl.readRequest returns it.
+     */
+    public FixedRowsDbService(String type, JSONArray seedPage, JSONObject requestRow) {
+        this.type = type;
+        this.seedPage = seedPage;
+        this.requestRow = requestRow;
+    }
+
+    @Override
+    public JSONArray seed(String type, NetworkQueueModel after, int limit, long now) {
+        return after == null && this.type.equals(type) ? seedPage : new JSONArray();
+    }
+
+    @Override
+    public JSONArray readTypes() throws JSONException {
+        return new JSONArray().put(new JSONObject().put("type", type));
+    }
+
+    @Override
+    public JSONArray readTypesDueSince(long since, long now) {
+        return new JSONArray();
+    }
+
+    @Override
+    public long readNextAttemptAt(long now) {
+        return 0;
+    }
+
+    @Override
+    public JSONArray readQueueStats() {
+        return new JSONArray();
+    }
+
+    @Override
+    public JSONObject readRequest(String msgId) {
+        return requestRow;
+    }
+
+    @Override
+    public JSONArray readLegacyBodies(int limit) {
+        return new JSONArray();
+    }
+
+    @Override
+    public long insert(JSONObject request) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Long> insert(List<JSONObject> requests) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long acknowledge(List<String> deletedMsgIds, Map<String, JSONObject> updatesByMsgId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long update(String coloumnName, String[] whereArgs, JSONObject request) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long saveNoSql(String key, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JSONArray read(String table, String[] coloumns, String selection, String selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+}
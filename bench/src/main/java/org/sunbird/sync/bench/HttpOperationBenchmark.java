@@ -0,0 +1,92 @@
+package org.sunbird.sync.bench;
+
+import com.silkimen.http.HttpRequest;
+import com.silkimen.http.OkConnectionFactory;
+import com.silkimen.http.TLSConfiguration;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sunbird.sync.db.PayloadCodec;
+import org.sunbird.sync.model.HttpResponse;
+import org.sunbird.sync.network.HttpOperation;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One telemetry POST through {@link HttpOperation#execute()} against a {@link StubServer} on the
+ * loopback interface, with the body sent as is, compressed while it is streamed, or already
+ * gzipped in storage. Connections are kept alive between requests as they are on a device.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpOperationBenchmark {
+
+    @Param({"1", "20", "200"})
+    public int events;
+
+    @Param({"none", "gzip", "stored"})
+    public String compression;
+
+    private StubServer stubServer;
+    private HttpRequest.ConnectionFactory connectionFactory;
+    private TLSConfiguration tlsConfiguration;
+    private JSONObject headers;
+    private String body;
+    private String storedBody;
+    private long bodySize;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        stubServer = new StubServer(StubServer.OK);
+        connectionFactory = new OkConnectionFactory();
+        tlsConfiguration = new TLSConfiguration();
+        headers = new JSONObject().put("X-Channel-Id", "bench").put("Authorization", "Bearer bench");
+        body = SyntheticEntries.telemetryBatch(events, System.currentTimeMillis(), new Random(42)).toString();
+        bodySize = body.getBytes("UTF-8").length;
+        storedBody = PayloadCodec.encode(body, PayloadCodec.GZIP);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        stubServer.close();
+    }
+
+    @Benchmark
+    public int execute() {
+        HttpOperation httpOperation;
+        if ("stored".equals(compression)) {
+            httpOperation = newOperation(storedBody);
+            httpOperation.setContentEncoding("gzip", bodySize);
+        } else {
+            httpOperation = newOperation(body);
+            httpOperation.setCompression("none".equals(compression) ? null : compression);
+        }
+        HttpResponse httpResponse = httpOperation.execute();
+        if (httpResponse.getStatus() != 200) {
+            throw new IllegalStateException("Unexpected response: " + httpResponse.getStatus() + " " + httpResponse.getError());
+        }
+        return httpResponse.getStatus();
+    }
+
+    private HttpOperation newOperation(String data) {
+        return new HttpOperation("POST", stubServer.getHost() + "/api/data/v1/telemetry", "json", data, headers,
+                tlsConfiguration, connectionFactory, null);
+    }
+}
@@ -0,0 +1,88 @@
+package org.sunbird.sync.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sunbird.sync.model.NetworkQueueModel;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ordering NetworkQueueModels the way a lane does: by schedule rank, priority and row id through
+ * {@link NetworkQueueModel#compareTo(NetworkQueueModel)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriorityQueueBenchmark {
+
+    @Param({"50", "1000", "10000"})
+    public int size;
+
+    private NetworkQueueModel[] models;
+    private PriorityQueue<NetworkQueueModel> window;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createModels() {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        models = new NetworkQueueModel[size * 2];
+        for (int i = 0; i < models.length; i++) {
+            int priority = 1 + random.nextInt(3);
+            long timestamp = now - random.nextInt(24 * 60 * 60 * 1000);
+            models[i] = new NetworkQueueModel(i + 1, "msg-" + i, "telemetry", priority, timestamp, null, 1, 1024L);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void fillWindow() {
+        window = new PriorityQueue<>();
+        for (int i = 0; i < size; i++) {
+            window.add(models[i]);
+        }
+        next = size;
+    }
+
+    /**
+     * Fills a heap with size entries and drains it in order, as seeding a window and draining it does.
+     */
+    @Benchmark
+    public long fillAndDrain() {
+        PriorityQueue<NetworkQueueModel> queue = new PriorityQueue<>();
+        for (int i = 0; i < size; i++) {
+            queue.add(models[i]);
+        }
+        long checksum = 0;
+        NetworkQueueModel networkQueueModel;
+        while ((networkQueueModel = queue.poll()) != null) {
+            checksum += networkQueueModel.getRowId();
+        }
+        return checksum;
+    }
+
+    /**
+     * One poll and one add on a heap holding size entries, as an enqueue during a drain does.
+     */
+    @Benchmark
+    public NetworkQueueModel pollAndAdd() {
+        NetworkQueueModel head = window.poll();
+        window.add(models[next]);
+        next = next + 1 < models.length ? next + 1 : 0;
+        return head;
+    }
+}
@@ -0,0 +1,116 @@
+package org.sunbird.sync.bench;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sunbird.sync.model.NetworkQueueModel;
+import org.sunbird.sync.model.Request;
+import org.sunbird.sync.queue.NetworkQueue;
+import org.sunbird.sync.queue.NetworkQueueImpl;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JSON work NetworkQueueImpl does per entry, on rows served by a {@link FixedRowsDbService}:
+ * a seeded page of rows turned into NetworkQueueModels, a model's config read, and a stored row
+ * turned into a Request by loadRequest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueModelJsonBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    private FixedRowsDbService dbService;
+    private NetworkQueue networkQueue;
+    private NetworkQueueModel networkQueueModel;
+
+    @Setup(Level.Trial)
+    public void createRows() throws Exception {
+        Random random = new Random(42);
+        long timestamp = System.currentTimeMillis();
+        JSONArray seedPage = new JSONArray();
+        JSONObject requestRow = null;
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            JSONObject entry = SyntheticEntries.entry("http://127.0.0.1", timestamp + i, random);
+            while (!"telemetry".equals(entry.getString("type"))) {
+                entry = SyntheticEntries.entry("http://127.0.0.1", timestamp + i, random);
+            }
+            seedPage.put(toSeedRow(i + 1, entry));
+            if (requestRow == null) {
+                requestRow = toRequestRow(entry);
+            }
+        }
+        dbService = new FixedRowsDbService("telemetry", seedPage, requestRow);
+        networkQueue = new NetworkQueueImpl(dbService);
+        networkQueue.seed();
+        networkQueueModel = networkQueue.poll("telemetry");
+    }
+
+    /**
+     * Seeds a new index from one page of rows and polls every model out of it.
+     */
+    @Benchmark
+    public int seedPage() {
+        NetworkQueue networkQueue = new NetworkQueueImpl(dbService);
+        networkQueue.seed();
+        int polled = 0;
+        while (networkQueue.poll("telemetry") != null) {
+            polled++;
+        }
+        return polled;
+    }
+
+    @Benchmark
+    public JSONObject modelConfig() throws JSONException {
+        return networkQueueModel.getConfig();
+    }
+
+    @Benchmark
+    public Request loadRequest() {
+        return networkQueue.loadRequest(networkQueueModel);
+    }
+
+    private static JSONObject toSeedRow(long id, JSONObject entry) throws JSONException {
+        JSONObject row = new JSONObject();
+        row.put("_id", id);
+        row.put("msg_id", entry.get("msg_id"));
+        row.put("type", entry.get("type"));
+        row.put("priority", entry.get("priority"));
+        row.put("timestamp", entry.get("timestamp"));
+        row.put("config", entry.get("config"));
+        row.put("item_count", entry.get("item_count"));
+        row.put("attempts", 0);
+        row.put("next_attempt_at", 0);
+        row.put("compaction_key", JSONObject.NULL);
+        row.put("schedule_rank", entry.get("schedule_rank"));
+        row.put("size", entry.getString("request").length() + entry.getString("body").length());
+        return row;
+    }
+
+    private static JSONObject toRequestRow(JSONObject entry) throws JSONException {
+        JSONObject row = new JSONObject();
+        row.put("request", entry.get("request"));
+        row.put("body", entry.get("body"));
+        row.put("body_codec", entry.get("body_codec"));
+        row.put("body_size", entry.has("body_size") ? entry.get("body_size") : JSONObject.NULL);
+        row.put("failure_count", 0);
+        return row;
+    }
+}
@@ -0,0 +1,70 @@
+package org.sunbird.sync.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sunbird.sync.db.DbService;
+import org.sunbird.sync.db.DbServiceImpl;
+import org.sunbird.sync.model.NetworkQueueModel;
+import org.sunbird.sync.queue.NetworkQueue;
+import org.sunbird.sync.queue.NetworkQueueImpl;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold-start seeding of the in-memory index over a network_queue of 1k, 10k and 100k rows, and a
+ * full walk of the index, which pages every row in. The first should stay flat as the backlog
+ * grows; the second should grow linearly with it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SeedBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private DbService dbService;
+
+    @Setup(Level.Trial)
+    public void fill() throws Exception {
+        BenchDatabase.open();
+        BenchDatabase.clear();
+        dbService = new DbServiceImpl();
+        SyntheticEntries.fill(dbService, "http://127.0.0.1", rows, new Random(42));
+    }
+
+    @Benchmark
+    public int seed() {
+        NetworkQueue networkQueue = new NetworkQueueImpl(dbService);
+        networkQueue.seed();
+        return networkQueue.getTypes().size();
+    }
+
+    @Benchmark
+    public int seedAndPollAll() {
+        NetworkQueue networkQueue = new NetworkQueueImpl(dbService);
+        networkQueue.seed();
+        int polled = 0;
+        for (String type : networkQueue.getTypes()) {
+            NetworkQueueModel networkQueueModel;
+            while ((networkQueueModel = networkQueue.poll(type)) != null) {
+                polled += networkQueueModel.getEventCount();
+            }
+        }
+        return polled;
+    }
+}
@@ -0,0 +1,208 @@
+package org.sunbird.sync.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process HTTP server on the loopback interface standing in for the Sunbird APIs. Every
+ * request is answered as its {@link Responder} decides, and the server keeps count of what went
+ * over the wire.
+ */
+public class StubServer implements Closeable {
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final byte[] OK_BODY = "{\"id\":\"api.sunbird\",\"params\":{\"status\":\"successful\"},\"responseCode\":\"OK\",\"result\":{}}".getBytes();
+    private static final byte[] ERROR_BODY = "{\"id\":\"api.sunbird\",\"params\":{\"status\":\"failed\"},\"responseCode\":\"SERVER_ERROR\",\"result\":{}}".getBytes();
+
+    /**
+     * Decides how a request is answered.
+     */
+    public interface Responder {
+        Reply respond(String path);
+    }
+
+    /**
+     * The status to answer with, how long to wait before answering and the rate, in bytes per
+     * second, the request body is read at. A rate of 0 reads it as fast as it arrives. A status of
+     * {@link #NO_RESPONSE} closes the connection after the wait without answering, which the
+     * client sees as a read timeout when the wait is longer than its own.
+     */
+    public static class Reply {
+        public static final int NO_RESPONSE = 0;
+
+        private final int status;
+        private final long latency;
+        private final long bytesPerSecond;
+
+        public Reply(int status, long latency, long bytesPerSecond) {
+            this.status = status;
+            this.latency = latency;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+    }
+
+    public static final Responder OK = new Responder() {
+        private final Reply reply = new Reply(200, 0, 0);
+
+        @Override
+        public Reply respond(String path) {
+            return reply;
+        }
+    };
+
+    private final HttpServer server;
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private volatile Responder responder;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong lastRequestAt = new AtomicLong();
+    private final Map<Integer, AtomicLong> statusCounts = new ConcurrentHashMap<>();
+    private final List<Long> latencies = new ArrayList<>();
+
+    static {
+        // Responses are written as headers, then body; without this, Nagle's algorithm holds the body
+        // back for the client's delayed ACK and every exchange takes 40ms on the loopback interface.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    public StubServer(Responder responder) throws IOException {
+        this.responder = responder;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executorService);
+        this.server.start();
+    }
+
+    public String getHost() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void setResponder(Responder responder) {
+        this.responder = responder;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Bytes of request bodies received, as sent, i.e. compressed when they were.
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getLastRequestAt() {
+        return lastRequestAt.get();
+    }
+
+    /**
+     * Requests answered per status. {@link Reply#NO_RESPONSE} counts the requests left unanswered
+     * and -1 the ones whose client went away before the response was written.
+     */
+    public Map<Integer, Long> getStatusCounts() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        for (Map.Entry<Integer, AtomicLong> entry : statusCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    /**
+     * Time, in milliseconds, from the arrival of each request to the end of its response.
+     */
+    public List<Long> getLatencies() {
+        synchronized (latencies) {
+            return new ArrayList<>(latencies);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long startedAt = System.nanoTime();
+        lastRequestAt.set(System.currentTimeMillis());
+        requests.incrementAndGet();
+        Reply reply = responder.respond(exchange.getRequestURI().getPath());
+        try {
+            bytesReceived.addAndGet(readBody(exchange.getRequestBody(), reply.bytesPerSecond));
+            if (reply.latency > 0) {
+                Thread.sleep(reply.latency);
+            }
+            if (reply.status == Reply.NO_RESPONSE) {
+                count(Reply.NO_RESPONSE);
+                return;
+            }
+            byte[] body = reply.status < 400 ? OK_BODY : ERROR_BODY;
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(reply.status, body.length);
+            OutputStream outputStream = exchange.getResponseBody();
+            outputStream.write(body);
+            outputStream.close();
+            bytesSent.addAndGet(body.length);
+            count(reply.status);
+            synchronized (latencies) {
+                latencies.add((System.nanoTime() - startedAt) / 1000000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // The client went away before the response was written.
+            count(-1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private long readBody(InputStream inputStream, long bytesPerSecond) throws IOException, InterruptedException {
+        long startedAt = System.nanoTime();
+        byte[] buffer = new byte[CHUNK_SIZE];
+        long total = 0;
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            total += read;
+            if (bytesPerSecond > 0) {
+                long due = total * 1000 / bytesPerSecond - (System.nanoTime() - startedAt) / 1000000;
+                if (due > 0) {
+                    Thread.sleep(due);
+                }
+            }
+        }
+        return total;
+    }
+
+    private void count(int status) {
+        AtomicLong count = statusCounts.get(status);
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong();
+            count = statusCounts.putIfAbsent(status, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executorService.shutdownNow();
+    }
+}
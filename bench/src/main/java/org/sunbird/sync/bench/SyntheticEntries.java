@@ -0,0 +1,185 @@
+package org.sunbird.sync.bench;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.sunbird.sync.db.DbService;
+import org.sunbird.sync.db.PayloadCodec;
+import org.sunbird.sync.model.NetworkQueueModel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Builds network_queue rows of a realistic mix of types, in the shape SyncPlugin.enqueue stores
+ * them: the request envelope without its body, the body in its own column in the format its config
+ * calls for, and the schedule rank NetworkQueueImpl.enqueue derives.
+ *
+ * The mix is 70% telemetry batches, a tenth of them gzip compressed, 20% course_progress updates
+ * and 10% course_assesment submissions.
+ */
+public final class SyntheticEntries {
+
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    private SyntheticEntries() {
+    }
+
+    /**
+     * Inserts count entries for the given host, in batches, and returns how many of each type went in.
+     */
+    public static int[] fill(DbService dbService, String host, int count, Random random) throws JSONException, IOException {
+        int[] typeCounts = new int[3];
+        long timestamp = System.currentTimeMillis() - count;
+        List<JSONObject> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int kind = pickKind(random);
+            typeCounts[kind]++;
+            batch.add(entry(kind, host, timestamp + i, random));
+            if (batch.size() == INSERT_BATCH_SIZE) {
+                dbService.insert(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            dbService.insert(batch);
+        }
+        return typeCounts;
+    }
+
+    public static String typeName(int kind) {
+        return kind == 0 ? "telemetry" : kind == 1 ? "course_progress" : "course_assesment";
+    }
+
+    public static JSONObject entry(String host, long timestamp, Random random) throws JSONException, IOException {
+        return entry(pickKind(random), host, timestamp, random);
+    }
+
+    private static int pickKind(Random random) {
+        int roll = random.nextInt(10);
+        return roll < 7 ? 0 : roll < 9 ? 1 : 2;
+    }
+
+    private static JSONObject entry(int kind, String host, long timestamp, Random random) throws JSONException, IOException {
+        String type = typeName(kind);
+        JSONObject body;
+        String path;
+        String config;
+        int priority;
+        int itemCount;
+        if (kind == 0) {
+            itemCount = 1 + random.nextInt(20);
+            body = telemetryBatch(itemCount, timestamp, random);
+            path = "/api/data/v1/telemetry";
+            config = random.nextInt(10) == 0 ? "{\"shouldPublishResult\":true,\"compression\":\"gzip\"}" : "{\"shouldPublishResult\":true}";
+            priority = 2;
+        } else if (kind == 1) {
+            itemCount = 1;
+            body = courseProgress(random);
+            path = "/api/course/v1/content/state/update";
+            config = "{\"shouldPublishResult\":true}";
+            priority = 1;
+        } else {
+            itemCount = 1;
+            body = courseAssessment(random);
+            path = "/api/course/v2/assessment/update";
+            config = "{\"shouldPublishResult\":true}";
+            priority = 1;
+        }
+
+        JSONObject headers = new JSONObject();
+        headers.put("Content-Type", "application/json");
+        headers.put("X-Channel-Id", "bench");
+        headers.put("Authorization", "Bearer enqueued-token");
+        JSONObject request = new JSONObject();
+        request.put("host", host);
+        request.put("path", path);
+        request.put("type", "POST");
+        request.put("serializer", "json");
+        request.put("headers", headers);
+
+        String codec = PayloadCodec.getCodec("json", new JSONObject(config).optString("compression", null));
+        String bodyText = body.toString();
+        JSONObject entry = new JSONObject();
+        entry.put("msg_id", UUID.randomUUID().toString());
+        entry.put("type", type);
+        entry.put("priority", priority);
+        entry.put("timestamp", timestamp);
+        entry.put("request", request.toString());
+        entry.put("config", config);
+        entry.put("item_count", itemCount);
+        entry.put("body", PayloadCodec.encode(bodyText, codec));
+        entry.put("body_codec", codec);
+        if (PayloadCodec.GZIP.equals(codec)) {
+            entry.put("body_size", bodyText.getBytes("UTF-8").length);
+        }
+        entry.put("schedule_rank", NetworkQueueModel.getScheduleRank(priority, timestamp));
+        return entry;
+    }
+
+    public static JSONObject telemetryBatch(int eventCount, long timestamp, Random random) throws JSONException {
+        JSONArray events = new JSONArray();
+        for (int i = 0; i < eventCount; i++) {
+            JSONObject edata = new JSONObject();
+            edata.put("type", "view");
+            edata.put("pageid", "content-detail-" + random.nextInt(1000));
+            edata.put("duration", random.nextInt(600));
+            JSONObject context = new JSONObject();
+            context.put("channel", "bench");
+            context.put("env", "contentplayer");
+            context.put("sid", UUID.randomUUID().toString());
+            context.put("did", "device-" + random.nextInt(100));
+            JSONObject event = new JSONObject();
+            event.put("eid", random.nextBoolean() ? "IMPRESSION" : "INTERACT");
+            event.put("ets", timestamp);
+            event.put("ver", "3.0");
+            event.put("mid", UUID.randomUUID().toString());
+            event.put("actor", new JSONObject().put("id", "user-" + random.nextInt(50)).put("type", "User"));
+            event.put("context", context);
+            event.put("object", new JSONObject().put("id", "do_" + random.nextInt(100000)).put("type", "Content"));
+            event.put("edata", edata);
+            events.put(event);
+        }
+        JSONObject batch = new JSONObject();
+        batch.put("id", "api.sunbird.telemetry");
+        batch.put("ver", "3.0");
+        batch.put("params", new JSONObject().put("msgid", UUID.randomUUID().toString()));
+        batch.put("ets", timestamp);
+        batch.put("events", events);
+        return batch;
+    }
+
+    private static JSONObject courseProgress(Random random) throws JSONException {
+        JSONObject content = new JSONObject();
+        content.put("contentId", "do_" + random.nextInt(100000));
+        content.put("courseId", "do_course_" + random.nextInt(100));
+        content.put("batchId", "batch_" + random.nextInt(20));
+        content.put("status", 1 + random.nextInt(2));
+        content.put("progress", random.nextInt(101));
+        JSONObject request = new JSONObject();
+        request.put("userId", "user-" + random.nextInt(50));
+        request.put("contents", new JSONArray().put(content));
+        return new JSONObject().put("request", request);
+    }
+
+    private static JSONObject courseAssessment(Random random) throws JSONException {
+        JSONArray events = new JSONArray();
+        for (int i = 0; i < 5; i++) {
+            JSONObject edata = new JSONObject();
+            edata.put("item", new JSONObject().put("id", "do_q" + random.nextInt(1000)).put("maxscore", 1));
+            edata.put("score", random.nextInt(2));
+            edata.put("pass", random.nextBoolean() ? "Yes" : "No");
+            events.put(new JSONObject().put("eid", "ASSESS").put("edata", edata));
+        }
+        JSONObject request = new JSONObject();
+        request.put("userId", "user-" + random.nextInt(50));
+        request.put("courseId", "do_course_" + random.nextInt(100));
+        request.put("batchId", "batch_" + random.nextInt(20));
+        request.put("contentId", "do_" + random.nextInt(100000));
+        request.put("assessments", new JSONArray().put(new JSONObject().put("events", events)));
+        return new JSONObject().put("request", request);
+    }
+}
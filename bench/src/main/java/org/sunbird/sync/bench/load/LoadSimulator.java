@@ -0,0 +1,217 @@
+package org.sunbird.sync.bench.load;
+
+import android.app.Activity;
+
+import com.silkimen.http.HttpRequest;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.CordovaInterface;
+import org.apache.cordova.CordovaPreferences;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.sunbird.sync.SyncPlugin;
+import org.sunbird.sync.bench.BenchDatabase;
+import org.sunbird.sync.bench.StubServer;
+import org.sunbird.sync.bench.SyntheticEntries;
+import org.sunbird.sync.db.DbServiceImpl;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills the network queue with synthetic entries of mixed types and drains it through SyncPlugin,
+ * as a Cordova host would drive it, against a {@link StubServer} playing a {@link Scenario}. It
+ * runs until the queue is empty or the time limit is reached, and then reports how the drain went.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar org.sunbird.sync.bench.load.LoadSimulator \
+ *     [--entries 10000] [--scenario flaky|path/to/scenario.json] [--seed 42] [--timeout 300]
+ * </pre>
+ *
+ * Entries that failed are retried on the plugin's own backoff schedule, which starts at 5 seconds
+ * for 401/403, 15 seconds for network errors, a minute for 5xx and 5 minutes for other 4xx, so
+ * the time limit decides which of those retries a run gets to see.
+ */
+public class LoadSimulator {
+
+    private static final String PREFERENCE_FILE = "org.ekstep.genieservices.preference_file";
+    private static final long POLL_INTERVAL = 250;
+    private static final long PROGRESS_INTERVAL = 5000;
+
+    public static void main(String[] args) throws Exception {
+        int entries = 10000;
+        String scenarioName = "healthy";
+        long seed = 42;
+        long timeout = 300;
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            if ("--entries".equals(args[i]) && value != null) {
+                entries = Integer.parseInt(value);
+            } else if ("--scenario".equals(args[i]) && value != null) {
+                scenarioName = value;
+            } else if ("--seed".equals(args[i]) && value != null) {
+                seed = Long.parseLong(value);
+            } else if ("--timeout".equals(args[i]) && value != null) {
+                timeout = Long.parseLong(value);
+            } else {
+                System.err.println("Usage: LoadSimulator [--entries N] [--scenario name|file] [--seed N] [--timeout seconds]");
+                System.exit(2);
+            }
+            i++;
+        }
+        Scenario scenario = Scenario.load(scenarioName, seed);
+        System.exit(new LoadSimulator().run(scenario, entries, seed, timeout * 1000) ? 0 : 1);
+    }
+
+    /**
+     * Returns whether the queue was drained within the time limit.
+     */
+    public boolean run(Scenario scenario, int entries, long seed, long timeout) throws Exception {
+        BenchDatabase.open();
+        BenchDatabase.clear();
+        StubServer stubServer = new StubServer(scenario);
+        HttpRequest.setHostResolver(scenario);
+        HttpRequest.setMaxReadTimeout(scenario.getReadTimeout());
+
+        long filledAt = System.currentTimeMillis();
+        int[] typeCounts = SyntheticEntries.fill(new DbServiceImpl(), stubServer.getHost(), entries, new Random(seed));
+        System.out.printf("Queued %d entries in %d ms: %d telemetry, %d course_progress, %d course_assesment%n",
+                entries, System.currentTimeMillis() - filledAt, typeCounts[0], typeCounts[1], typeCounts[2]);
+        System.out.printf("Scenario %s, read timeout %d ms, time limit %d s%n", scenario.getName(), scenario.getReadTimeout(), timeout / 1000);
+
+        final Activity activity = new Activity();
+        activity.putString(PREFERENCE_FILE, "api_bearer_token", "bench-token");
+        final ExecutorService threadPool = Executors.newCachedThreadPool();
+        CordovaInterface cordova = new CordovaInterface() {
+            @Override
+            public Activity getActivity() {
+                return activity;
+            }
+
+            @Override
+            public ExecutorService getThreadPool() {
+                return threadPool;
+            }
+        };
+        CordovaPreferences preferences = new CordovaPreferences();
+        preferences.set("SyncDebounceInterval", 0);
+
+        SyncPlugin syncPlugin = new SyncPlugin();
+        syncPlugin.privateInitialize("SyncPlugin", cordova, null, preferences);
+
+        long startedAt = System.currentTimeMillis();
+        syncPlugin.execute("sync", new JSONArray(), new CallbackContext("sync", null));
+        JSONObject stats = getSyncStats(syncPlugin);
+        long lastProgressAt = startedAt;
+        long depth = getDepth(stats);
+        while (depth > 0 && System.currentTimeMillis() - startedAt < timeout) {
+            Thread.sleep(POLL_INTERVAL);
+            stats = getSyncStats(syncPlugin);
+            depth = getDepth(stats);
+            if (System.currentTimeMillis() - lastProgressAt >= PROGRESS_INTERVAL) {
+                lastProgressAt = System.currentTimeMillis();
+                System.out.printf("  %5.1f s: %d left, %d requests%n", (lastProgressAt - startedAt) / 1000.0, depth, stubServer.getRequests());
+            }
+        }
+        long elapsed = System.currentTimeMillis() - startedAt;
+
+        syncPlugin.onDestroy();
+        stats = getSyncStats(syncPlugin);
+        stubServer.close();
+        threadPool.shutdownNow();
+        HttpRequest.setHostResolver(null);
+
+        report(entries, depth, elapsed, stats, stubServer, scenario);
+        return depth == 0;
+    }
+
+    private static JSONObject getSyncStats(SyncPlugin syncPlugin) throws Exception {
+        final SynchronousQueue<PluginResult> results = new SynchronousQueue<>();
+        syncPlugin.execute("getSyncStats", new JSONArray(), new CallbackContext("getSyncStats", null) {
+            @Override
+            public void sendPluginResult(PluginResult pluginResult) {
+                super.sendPluginResult(pluginResult);
+                try {
+                    results.put(pluginResult);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        PluginResult pluginResult = results.poll(10, TimeUnit.SECONDS);
+        if (pluginResult == null || pluginResult.getStatus() != PluginResult.Status.OK.ordinal()) {
+            throw new IllegalStateException("getSyncStats failed: " + (pluginResult != null ? pluginResult.getMessageObject() : "no result"));
+        }
+        return (JSONObject) pluginResult.getMessageObject();
+    }
+
+    private static long getDepth(JSONObject stats) {
+        long depth = 0;
+        JSONObject queue = stats.optJSONObject("queue");
+        if (queue != null) {
+            Iterator<String> types = queue.keys();
+            while (types.hasNext()) {
+                depth += queue.optJSONObject(types.next()).optLong("depth");
+            }
+        }
+        return depth;
+    }
+
+    private static void report(int entries, long depth, long elapsed, JSONObject stats, StubServer stubServer, Scenario scenario) {
+        long delivered = entries - depth;
+        long retries = 0;
+        long maxAttempts = 0;
+        long bytesUp = 0;
+        long uncompressedBytesUp = 0;
+        long bytesDown = 0;
+        JSONObject types = stats.optJSONObject("types");
+        Iterator<String> typeNames = types.keys();
+        while (typeNames.hasNext()) {
+            JSONObject type = types.optJSONObject(typeNames.next());
+            retries += type.optLong("retries");
+            maxAttempts = Math.max(maxAttempts, type.optLong("maxAttempts"));
+            bytesUp += type.optLong("bytesUp");
+            uncompressedBytesUp += type.optLong("uncompressedBytesUp");
+            bytesDown += type.optLong("bytesDown");
+        }
+        List<Long> latencies = stubServer.getLatencies();
+        Collections.sort(latencies);
+
+        System.out.println();
+        System.out.printf("Delivered   %d of %d entries in %.1f s (%s)%n", delivered, entries, elapsed / 1000.0,
+                depth == 0 ? "drained" : depth + " left at the time limit");
+        System.out.printf("Throughput  %.1f entries/s, %.1f requests/s%n", delivered * 1000.0 / elapsed, stubServer.getRequests() * 1000.0 / elapsed);
+        System.out.printf("Latency     p50 %d ms, p95 %d ms, p99 %d ms, max %d ms over %d answered requests%n",
+                percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99),
+                latencies.isEmpty() ? 0 : latencies.get(latencies.size() - 1), latencies.size());
+        System.out.printf("Retries     %d entries rescheduled after failing, at most %d attempts for one entry%n", retries, maxAttempts);
+        System.out.printf("Requests    %d reached the server, %d failed name resolution%n", stubServer.getRequests(), scenario.getDnsFailures());
+        StringBuilder statuses = new StringBuilder();
+        for (Map.Entry<Integer, Long> statusCount : stubServer.getStatusCounts().entrySet()) {
+            int status = statusCount.getKey();
+            String name = status == StubServer.Reply.NO_RESPONSE ? "timeout" : status < 0 ? "aborted" : String.valueOf(status);
+            statuses.append(statuses.length() > 0 ? ", " : "").append(name).append(' ').append(statusCount.getValue());
+        }
+        System.out.printf("Statuses    %s%n", statuses);
+        System.out.printf("Bytes up    %d on the wire, %d before compression (%d received by the server)%n",
+                bytesUp, uncompressedBytesUp, stubServer.getBytesReceived());
+        System.out.printf("Bytes down  %d (%d sent by the server)%n", bytesDown, stubServer.getBytesSent());
+        System.out.printf("Drains      %s%n", stats.optJSONObject("drain"));
+    }
+
+    private static long percentile(List<Long> sortedValues, int percentile) {
+        if (sortedValues.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedValues.size()) - 1;
+        return sortedValues.get(Math.max(0, Math.min(index, sortedValues.size() - 1)));
+    }
+}
@@ -0,0 +1,203 @@
+package org.sunbird.sync.bench.load;
+
+import com.silkimen.http.HttpRequest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.sunbird.sync.bench.StubServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A script for the network the sync engine talks to, read from JSON:
+ *
+ * <pre>
+ * {
+ *   "readTimeout": 5000,
+ *   "phases": [
+ *     {"durationMs": 20000, "faults": {"dns": 1.0}},
+ *     {"requests": 100, "latencyMs": 200, "jitterMs": 100, "bytesPerSecond": 65536, "faults": {"503": 0.5, "timeout": 0.1}},
+ *     {"latencyMs": 40}
+ *   ]
+ * }
+ * </pre>
+ *
+ * Phases run in order. One ends once it has seen its number of requests or has lasted its
+ * duration, whichever comes first; the last one never ends. Each request fails with the given
+ * probability per fault: "dns" fails name resolution on the device, "timeout" leaves the request
+ * unanswered past the read timeout, and a status code is answered as such. Every other request is
+ * answered 200, after the phase's latency plus up to its jitter, with the request body read at no
+ * more than its bandwidth cap.
+ */
+public class Scenario implements StubServer.Responder, HttpRequest.HostResolver {
+
+    private static final String DNS = "dns";
+    private static final String TIMEOUT = "timeout";
+    private static final int DEFAULT_READ_TIMEOUT = 10000;
+
+    private static class Phase {
+        private long requests;
+        private long duration;
+        private long latency;
+        private long jitter;
+        private long bytesPerSecond;
+        private double dnsFailure;
+        private final Map<String, Double> faults = new LinkedHashMap<>();
+    }
+
+    private final String name;
+    private final int readTimeout;
+    private final List<Phase> phases = new ArrayList<>();
+    private final Random random;
+    private final AtomicLong dnsFailures = new AtomicLong();
+    private int phaseIndex;
+    private long phaseStartedAt;
+    private long phaseRequests;
+
+    private Scenario(String name, JSONObject json, long seed) throws JSONException {
+        this.name = name;
+        this.readTimeout = json.optInt("readTimeout", DEFAULT_READ_TIMEOUT);
+        this.random = new Random(seed);
+        JSONArray phasesJson = json.getJSONArray("phases");
+        for (int i = 0; i < phasesJson.length(); i++) {
+            JSONObject phaseJson = phasesJson.getJSONObject(i);
+            Phase phase = new Phase();
+            phase.requests = phaseJson.optLong("requests", 0);
+            phase.duration = phaseJson.optLong("durationMs", 0);
+            phase.latency = phaseJson.optLong("latencyMs", 0);
+            phase.jitter = phaseJson.optLong("jitterMs", 0);
+            phase.bytesPerSecond = phaseJson.optLong("bytesPerSecond", 0);
+            JSONObject faults = phaseJson.optJSONObject("faults");
+            if (faults != null) {
+                Iterator<String> keys = faults.keys();
+                while (keys.hasNext()) {
+                    String fault = keys.next();
+                    if (DNS.equals(fault)) {
+                        phase.dnsFailure = faults.getDouble(fault);
+                    } else if (TIMEOUT.equals(fault) || fault.matches("[1-5][0-9][0-9]")) {
+                        phase.faults.put(fault, faults.getDouble(fault));
+                    } else {
+                        throw new JSONException("Unknown fault " + fault);
+                    }
+                }
+            }
+            phases.add(phase);
+        }
+        if (phases.isEmpty()) {
+            throw new JSONException("A scenario needs at least one phase");
+        }
+    }
+
+    /**
+     * Loads a scenario from a file, or else from the built-in scenario of that name.
+     */
+    public static Scenario load(String nameOrPath, long seed) throws IOException, JSONException {
+        File file = new File(nameOrPath);
+        InputStream inputStream = file.isFile() ? new FileInputStream(file)
+                : Scenario.class.getResourceAsStream("/scenarios/" + nameOrPath + ".json");
+        if (inputStream == null) {
+            throw new IOException("No scenario file or built-in scenario named " + nameOrPath);
+        }
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            String name = file.isFile() ? file.getName() : nameOrPath;
+            return new Scenario(name, new JSONObject(outputStream.toString("UTF-8")), seed);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public long getDnsFailures() {
+        return dnsFailures.get();
+    }
+
+    /**
+     * Called for every request before it connects, so it is also where a request counts towards
+     * its phase.
+     */
+    @Override
+    public void resolve(URL url) throws UnknownHostException {
+        Phase phase;
+        boolean isDnsFailure;
+        synchronized (this) {
+            phase = advance();
+            phaseRequests++;
+            isDnsFailure = phase.dnsFailure > 0 && random.nextDouble() < phase.dnsFailure;
+        }
+        if (isDnsFailure) {
+            dnsFailures.incrementAndGet();
+            throw new UnknownHostException(url.getHost());
+        }
+    }
+
+    /**
+     * Draws the reply among the phase's other faults, given that name resolution succeeded.
+     */
+    @Override
+    public StubServer.Reply respond(String path) {
+        Phase phase;
+        double roll;
+        long jitter;
+        synchronized (this) {
+            phase = advance();
+            roll = random.nextDouble() * (1 - phase.dnsFailure);
+            jitter = phase.jitter > 0 ? (long) (random.nextDouble() * phase.jitter) : 0;
+        }
+        for (Map.Entry<String, Double> fault : phase.faults.entrySet()) {
+            roll -= fault.getValue();
+            if (roll < 0) {
+                if (TIMEOUT.equals(fault.getKey())) {
+                    return new StubServer.Reply(StubServer.Reply.NO_RESPONSE, readTimeout + 1000, phase.bytesPerSecond);
+                }
+                return new StubServer.Reply(Integer.parseInt(fault.getKey()), phase.latency + jitter, phase.bytesPerSecond);
+            }
+        }
+        return new StubServer.Reply(200, phase.latency + jitter, phase.bytesPerSecond);
+    }
+
+    private Phase advance() {
+        long now = System.currentTimeMillis();
+        if (phaseStartedAt == 0) {
+            phaseStartedAt = now;
+        }
+        while (phaseIndex < phases.size() - 1) {
+            Phase phase = phases.get(phaseIndex);
+            boolean isOver = (phase.requests > 0 && phaseRequests >= phase.requests)
+                    || (phase.duration > 0 && now - phaseStartedAt >= phase.duration);
+            if (!isOver) {
+                break;
+            }
+            phaseIndex++;
+            phaseStartedAt = now;
+            phaseRequests = 0;
+        }
+        return phases.get(phaseIndex);
+    }
+}
@@ -0,0 +1,9 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * Stand-in for android.app.Activity.
+ */
+public class Activity extends Context {
+}
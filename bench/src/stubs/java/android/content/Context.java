@@ -0,0 +1,69 @@
+package android.content;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stand-in for android.content.Context whose preference files live in memory. Values are written
+ * through {@link #putString(String, String, String)}, which notifies the registered listeners the
+ * way a committed edit does on a device.
+ */
+public class Context {
+
+    public static final int MODE_PRIVATE = 0;
+
+    private final Map<String, MemorySharedPreferences> mSharedPreferences = new ConcurrentHashMap<>();
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public SharedPreferences getSharedPreferences(String name, int mode) {
+        MemorySharedPreferences sharedPreferences = mSharedPreferences.get(name);
+        if (sharedPreferences == null) {
+            sharedPreferences = new MemorySharedPreferences();
+            MemorySharedPreferences existing = mSharedPreferences.putIfAbsent(name, sharedPreferences);
+            if (existing != null) {
+                sharedPreferences = existing;
+            }
+        }
+        return sharedPreferences;
+    }
+
+    public void putString(String name, String key, String value) {
+        ((MemorySharedPreferences) getSharedPreferences(name, MODE_PRIVATE)).putString(key, value);
+    }
+
+    private static class MemorySharedPreferences implements SharedPreferences {
+        private final Map<String, String> mValues = new ConcurrentHashMap<>();
+        private final CopyOnWriteArrayList<OnSharedPreferenceChangeListener> mListeners = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String getString(String key, String defValue) {
+            String value = mValues.get(key);
+            return value != null ? value : defValue;
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+            mListeners.addIfAbsent(listener);
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+            mListeners.remove(listener);
+        }
+
+        private void putString(String key, String value) {
+            if (value == null) {
+                mValues.remove(key);
+            } else {
+                mValues.put(key, value);
+            }
+            for (OnSharedPreferenceChangeListener listener : mListeners) {
+                listener.onSharedPreferenceChanged(this, key);
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package android.content;
+
+/**
+ * Stand-in for android.content.SharedPreferences, limited to what the plugin reads.
+ */
+public interface SharedPreferences {
+
+    interface OnSharedPreferenceChangeListener {
+        void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key);
+    }
+
+    String getString(String key, String defValue);
+
+    void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener);
+
+    void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener);
+}
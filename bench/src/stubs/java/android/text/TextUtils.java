@@ -0,0 +1,25 @@
+package android.text;
+
+/**
+ * Stand-in for android.text.TextUtils.
+ */
+public final class TextUtils {
+
+    private TextUtils() {
+    }
+
+    public static String join(CharSequence delimiter, Iterable tokens) {
+        StringBuilder joined = new StringBuilder();
+        for (Object token : tokens) {
+            if (joined.length() > 0) {
+                joined.append(delimiter);
+            }
+            joined.append(token);
+        }
+        return joined.toString();
+    }
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+}
@@ -0,0 +1,33 @@
+package android.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stand-in for android.util.Base64, covering the flags the plugin uses.
+ */
+public final class Base64 {
+
+    public static final int DEFAULT = 0;
+    public static final int NO_WRAP = 2;
+
+    private static final java.util.Base64.Encoder WRAPPING_ENCODER = java.util.Base64.getMimeEncoder(76, new byte[]{'\n'});
+
+    private Base64() {
+    }
+
+    public static byte[] decode(String str, int flags) {
+        return java.util.Base64.getMimeDecoder().decode(str);
+    }
+
+    public static byte[] decode(byte[] input, int flags) {
+        return java.util.Base64.getMimeDecoder().decode(input);
+    }
+
+    public static String encodeToString(byte[] input, int flags) {
+        return new String(encode(input, flags), StandardCharsets.US_ASCII);
+    }
+
+    public static byte[] encode(byte[] input, int flags) {
+        return (flags & NO_WRAP) != 0 ? java.util.Base64.getEncoder().encode(input) : WRAPPING_ENCODER.encode(input);
+    }
+}
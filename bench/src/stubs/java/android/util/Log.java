@@ -0,0 +1,44 @@
+package android.util;
+
+/**
+ * Stand-in for android.util.Log. Warnings and errors go to stderr when the bench.log system
+ * property is set; everything else is dropped, so logging does not skew the measurements.
+ */
+public final class Log {
+
+    private static final boolean IS_ENABLED = Boolean.getBoolean("bench.log");
+
+    private Log() {
+    }
+
+    public static int d(String tag, String msg) {
+        return 0;
+    }
+
+    public static int i(String tag, String msg) {
+        return 0;
+    }
+
+    public static int w(String tag, String msg) {
+        return print("W", tag, msg, null);
+    }
+
+    public static int w(String tag, String msg, Throwable tr) {
+        return print("W", tag, msg, tr);
+    }
+
+    public static int e(String tag, String msg) {
+        return print("E", tag, msg, null);
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return print("E", tag, msg, tr);
+    }
+
+    private static int print(String level, String tag, String msg, Throwable tr) {
+        if (IS_ENABLED) {
+            System.err.println(level + "/" + tag + ": " + msg + (tr != null ? " (" + tr + ")" : ""));
+        }
+        return 0;
+    }
+}
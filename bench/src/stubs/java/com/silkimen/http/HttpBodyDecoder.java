@@ -0,0 +1,17 @@
+package com.silkimen.http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stand-in for the response body decoder of cordova-plugin-advanced-http.
+ */
+public class HttpBodyDecoder {
+
+    public static String decodeBody(byte[] body, String charsetName) throws CharacterCodingException {
+        Charset charset = charsetName != null && Charset.isSupported(charsetName) ? Charset.forName(charsetName) : StandardCharsets.UTF_8;
+        return charset.newDecoder().decode(ByteBuffer.wrap(body)).toString();
+    }
+}
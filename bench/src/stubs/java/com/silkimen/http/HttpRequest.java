@@ -0,0 +1,239 @@
+package com.silkimen.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Plain-JVM stand-in for the HttpRequest of cordova-plugin-advanced-http, backed by
+ * {@link HttpURLConnection} and covering the calls HttpOperation makes.
+ *
+ * Two hooks, which the real class does not have, let a harness script network faults: a
+ * {@link HostResolver} that can fail host resolution the way a lost DNS would, and a cap on the
+ * read timeout, so timeouts show up in seconds rather than after the minute HttpOperation asks for.
+ */
+public class HttpRequest {
+
+    public interface ConnectionFactory {
+        HttpURLConnection create(URL url) throws IOException;
+    }
+
+    public interface HostResolver {
+        /**
+         * Throws an {@link java.net.UnknownHostException} when the host of the URL should not resolve.
+         */
+        void resolve(URL url) throws IOException;
+    }
+
+    public static class HttpRequestException extends RuntimeException {
+        public HttpRequestException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    private static volatile ConnectionFactory sConnectionFactory = new OkConnectionFactory();
+    private static volatile HostResolver sHostResolver;
+    private static volatile int sMaxReadTimeout = Integer.MAX_VALUE;
+
+    private final URL url;
+    private final String method;
+    private HttpURLConnection connection;
+    private boolean uncompress;
+
+    public HttpRequest(CharSequence url, String method) {
+        try {
+            this.url = new URL(url.toString());
+        } catch (MalformedURLException e) {
+            throw new HttpRequestException(e);
+        }
+        this.method = method;
+    }
+
+    public static void setConnectionFactory(ConnectionFactory connectionFactory) {
+        sConnectionFactory = connectionFactory != null ? connectionFactory : new OkConnectionFactory();
+    }
+
+    public static void setHostResolver(HostResolver hostResolver) {
+        sHostResolver = hostResolver;
+    }
+
+    public static void setMaxReadTimeout(int maxReadTimeout) {
+        sMaxReadTimeout = maxReadTimeout;
+    }
+
+    public HttpURLConnection getConnection() {
+        if (connection == null) {
+            try {
+                HostResolver hostResolver = sHostResolver;
+                if (hostResolver != null) {
+                    hostResolver.resolve(url);
+                }
+                connection = sConnectionFactory.create(url);
+                connection.setRequestMethod(method);
+                connection.setReadTimeout(Math.min(sMaxReadTimeout, 60000));
+            } catch (IOException e) {
+                throw new HttpRequestException(e);
+            }
+        }
+        return connection;
+    }
+
+    public HttpRequest followRedirects(boolean followRedirects) {
+        getConnection().setInstanceFollowRedirects(followRedirects);
+        return this;
+    }
+
+    public HttpRequest readTimeout(int timeout) {
+        getConnection().setReadTimeout(Math.min(timeout, sMaxReadTimeout));
+        return this;
+    }
+
+    public HttpRequest acceptCharset(String acceptCharset) {
+        return header("Accept-Charset", acceptCharset);
+    }
+
+    public HttpRequest uncompress(boolean uncompress) {
+        this.uncompress = uncompress;
+        if (uncompress) {
+            header("Accept-Encoding", "gzip");
+        }
+        return this;
+    }
+
+    public HttpRequest setSSLSocketFactory(SSLSocketFactory sslSocketFactory) {
+        if (sslSocketFactory != null && getConnection() instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) getConnection()).setSSLSocketFactory(sslSocketFactory);
+        }
+        return this;
+    }
+
+    public HttpRequest setHostnameVerifier(HostnameVerifier hostnameVerifier) {
+        if (getConnection() instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) getConnection()).setHostnameVerifier(hostnameVerifier);
+        }
+        return this;
+    }
+
+    public HttpRequest contentType(String contentType) {
+        return header("Content-Type", contentType);
+    }
+
+    public HttpRequest contentType(String contentType, String charset) {
+        return header("Content-Type", contentType + "; charset=" + charset);
+    }
+
+    public HttpRequest header(String name, String value) {
+        getConnection().setRequestProperty(name, value);
+        return this;
+    }
+
+    public HttpRequest headers(Map<String, String> headers) {
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                header(header.getKey(), header.getValue());
+            }
+        }
+        return this;
+    }
+
+    public Map<String, List<String>> headers() {
+        return getConnection().getHeaderFields();
+    }
+
+    public HttpRequest chunk(int size) {
+        getConnection().setChunkedStreamingMode(size);
+        return this;
+    }
+
+    public HttpRequest send(byte[] body) {
+        try {
+            getConnection().setDoOutput(true);
+            getConnection().setFixedLengthStreamingMode(body.length);
+            OutputStream outputStream = getConnection().getOutputStream();
+            try {
+                outputStream.write(body);
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new HttpRequestException(e);
+        }
+        return this;
+    }
+
+    public HttpRequest send(CharSequence body) {
+        return send(body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int code() {
+        try {
+            return getConnection().getResponseCode();
+        } catch (IOException e) {
+            throw new HttpRequestException(e);
+        }
+    }
+
+    public HttpRequest receive(OutputStream outputStream) {
+        try {
+            HttpURLConnection connection = getConnection();
+            InputStream inputStream = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (inputStream == null) {
+                return this;
+            }
+            if (uncompress && "gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                inputStream = new GZIPInputStream(inputStream);
+            }
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                }
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw new HttpRequestException(e);
+        }
+        return this;
+    }
+
+    public String charset() {
+        String contentType = getConnection().getContentType();
+        if (contentType == null) {
+            return null;
+        }
+        for (String param : contentType.split(";")) {
+            String trimmed = param.trim();
+            if (trimmed.toLowerCase().startsWith("charset=")) {
+                return trimmed.substring("charset=".length()).replace("\"", "");
+            }
+        }
+        return null;
+    }
+
+    public URL url() {
+        return getConnection().getURL();
+    }
+
+    public HttpRequest disconnect() {
+        getConnection().disconnect();
+        return this;
+    }
+}
@@ -0,0 +1,26 @@
+package com.silkimen.http;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Stand-in for the JSON helpers of cordova-plugin-advanced-http.
+ */
+public class JsonUtils {
+
+    public static HashMap<String, String> getStringMap(JSONObject object) throws JSONException {
+        HashMap<String, String> map = new HashMap<>();
+        if (object == null) {
+            return map;
+        }
+        Iterator<String> keys = object.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            map.put(key, String.valueOf(object.get(key)));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,17 @@
+package com.silkimen.http;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Stand-in for the OkHttp backed connection factory; the JVM's own HttpURLConnection keeps
+ * connections alive in the same way for the purpose of the benchmarks.
+ */
+public class OkConnectionFactory implements HttpRequest.ConnectionFactory {
+
+    @Override
+    public HttpURLConnection create(URL url) throws IOException {
+        return (HttpURLConnection) url.openConnection();
+    }
+}
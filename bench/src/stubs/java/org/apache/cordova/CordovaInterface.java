@@ -0,0 +1,15 @@
+package org.apache.cordova;
+
+import android.app.Activity;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Stand-in for the Cordova host interface, limited to what the plugin uses.
+ */
+public interface CordovaInterface {
+
+    Activity getActivity();
+
+    ExecutorService getThreadPool();
+}
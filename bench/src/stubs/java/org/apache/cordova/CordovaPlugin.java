@@ -0,0 +1,43 @@
+package org.apache.cordova;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+/**
+ * Stand-in for the Cordova plugin base class, with the same lifecycle entry points.
+ */
+public class CordovaPlugin {
+
+    public CordovaWebView webView;
+    public CordovaInterface cordova;
+    protected CordovaPreferences preferences;
+    private String serviceName;
+
+    public final void privateInitialize(String serviceName, CordovaInterface cordova, CordovaWebView webView, CordovaPreferences preferences) {
+        this.serviceName = serviceName;
+        this.cordova = cordova;
+        this.webView = webView;
+        this.preferences = preferences;
+        initialize(cordova, webView);
+    }
+
+    public void initialize(CordovaInterface cordova, CordovaWebView webView) {
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        return false;
+    }
+
+    public void onPause(boolean multitasking) {
+    }
+
+    public void onResume(boolean multitasking) {
+    }
+
+    public void onDestroy() {
+    }
+}
@@ -0,0 +1,31 @@
+package org.apache.cordova;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Stand-in for the config.xml preferences of a Cordova app.
+ */
+public class CordovaPreferences {
+
+    private final Map<String, String> prefs = new HashMap<>();
+
+    public void set(String name, String value) {
+        prefs.put(name.toLowerCase(Locale.ENGLISH), value);
+    }
+
+    public void set(String name, int value) {
+        set(name, String.valueOf(value));
+    }
+
+    public int getInteger(String name, int defaultValue) {
+        String value = prefs.get(name.toLowerCase(Locale.ENGLISH));
+        return value != null ? Integer.decode(value) : defaultValue;
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue) {
+        String value = prefs.get(name.toLowerCase(Locale.ENGLISH));
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+}
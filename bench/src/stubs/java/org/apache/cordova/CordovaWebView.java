@@ -0,0 +1,7 @@
+package org.apache.cordova;
+
+/**
+ * Stand-in for the Cordova web view. The plugin never calls into it.
+ */
+public interface CordovaWebView {
+}
@@ -0,0 +1,60 @@
+package org.apache.cordova;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Stand-in for a result sent back to JS. The message is kept as the object it was built with.
+ */
+public class PluginResult {
+
+    public enum Status {
+        NO_RESULT, OK, CLASS_NOT_FOUND_EXCEPTION, ILLEGAL_ACCESS_EXCEPTION, INSTANTIATION_EXCEPTION,
+        MALFORMED_URL_EXCEPTION, IO_EXCEPTION, INVALID_ACTION, JSON_EXCEPTION, ERROR
+    }
+
+    private final Status status;
+    private final Object message;
+    private boolean keepCallback;
+
+    public PluginResult(Status status) {
+        this(status, (Object) null);
+    }
+
+    public PluginResult(Status status, String message) {
+        this(status, (Object) message);
+    }
+
+    public PluginResult(Status status, JSONObject message) {
+        this(status, (Object) message);
+    }
+
+    public PluginResult(Status status, JSONArray message) {
+        this(status, (Object) message);
+    }
+
+    private PluginResult(Status status, Object message) {
+        this.status = status;
+        this.message = message;
+    }
+
+    public void setKeepCallback(boolean keepCallback) {
+        this.keepCallback = keepCallback;
+    }
+
+    public boolean getKeepCallback() {
+        return keepCallback;
+    }
+
+    public int getStatus() {
+        return status.ordinal();
+    }
+
+    public Object getMessageObject() {
+        return message;
+    }
+
+    public String getMessage() {
+        return message != null ? message.toString() : null;
+    }
+}
@@ -0,0 +1,264 @@
+package org.sunbird.db;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link SQLiteOperator} over a single JDBC connection. Like the primary connection of an Android
+ * SQLiteDatabase, it is used by one thread at a time, and a transaction holds it from
+ * {@link #beginTransaction()} to {@link #endTransaction(boolean)}. Failed inserts return -1 as
+ * SQLiteDatabase.insert does.
+ */
+class JdbcSQLiteOperator implements SQLiteOperator {
+
+    private final Connection connection;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int transactionDepth;
+    private boolean isTransactionSuccessful = true;
+
+    JdbcSQLiteOperator(String url) {
+        try {
+            connection = DriverManager.getConnection(url);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void createTables() {
+        lock.lock();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS network_queue (_id INTEGER PRIMARY KEY AUTOINCREMENT, msg_id TEXT,"
+                    + " type TEXT, priority INTEGER, timestamp INTEGER, request TEXT, config TEXT, item_count INTEGER)");
+            statement.execute("CREATE TABLE IF NOT EXISTS no_sql (_id INTEGER PRIMARY KEY AUTOINCREMENT, key TEXT, value TEXT)");
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public JSONArray execute(String query) throws JSONException {
+        lock.lock();
+        try (Statement statement = connection.createStatement()) {
+            if (statement.execute(query)) {
+                try (ResultSet resultSet = statement.getResultSet()) {
+                    return toJSONArray(resultSet);
+                }
+            }
+            return new JSONArray();
+        } catch (SQLException e) {
+            throw new JSONException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public JSONArray read(boolean distinct, String table, String[] columns, String selection, String[] selectionArgs,
+                          String groupBy, String having, String orderBy, String limit) throws JSONException {
+        StringBuilder query = new StringBuilder("SELECT ");
+        if (distinct) {
+            query.append("DISTINCT ");
+        }
+        query.append(columns == null || columns.length == 0 ? "*" : join(columns));
+        query.append(" FROM ").append(table);
+        appendClause(query, " WHERE ", selection);
+        appendClause(query, " GROUP BY ", groupBy);
+        appendClause(query, " HAVING ", having);
+        appendClause(query, " ORDER BY ", orderBy);
+        appendClause(query, " LIMIT ", limit);
+        lock.lock();
+        try (PreparedStatement statement = connection.prepareStatement(query.toString())) {
+            bind(statement, selectionArgs, 1);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return toJSONArray(resultSet);
+            }
+        } catch (SQLException e) {
+            throw new JSONException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long insert(String table, JSONObject model) throws JSONException {
+        List<String> keys = keys(model);
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++) {
+            placeholders.append(i > 0 ? ",?" : "?");
+        }
+        String query = "INSERT INTO " + table + " (" + join(keys.toArray(new String[0])) + ") VALUES (" + placeholders + ")";
+        lock.lock();
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            for (int i = 0; i < keys.size(); i++) {
+                statement.setObject(i + 1, toSqlValue(model.get(keys.get(i))));
+            }
+            statement.executeUpdate();
+            try (Statement idStatement = connection.createStatement();
+                 ResultSet resultSet = idStatement.executeQuery("SELECT last_insert_rowid()")) {
+                return resultSet.next() ? resultSet.getLong(1) : -1;
+            }
+        } catch (SQLException e) {
+            return -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long update(String table, String whereClause, String[] whereArgs, JSONObject model) throws JSONException {
+        List<String> keys = keys(model);
+        StringBuilder query = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        for (int i = 0; i < keys.size(); i++) {
+            query.append(i > 0 ? ", " : "").append(keys.get(i)).append(" = ?");
+        }
+        appendClause(query, " WHERE ", whereClause);
+        lock.lock();
+        try (PreparedStatement statement = connection.prepareStatement(query.toString())) {
+            for (int i = 0; i < keys.size(); i++) {
+                statement.setObject(i + 1, toSqlValue(model.get(keys.get(i))));
+            }
+            bind(statement, whereArgs, keys.size() + 1);
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new JSONException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long delete(String table, String whereClause, String[] whereArgs) throws JSONException {
+        StringBuilder query = new StringBuilder("DELETE FROM ").append(table);
+        appendClause(query, " WHERE ", whereClause);
+        lock.lock();
+        try (PreparedStatement statement = connection.prepareStatement(query.toString())) {
+            bind(statement, whereArgs, 1);
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new JSONException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void beginTransaction() {
+        lock.lock();
+        try {
+            if (transactionDepth++ == 0) {
+                isTransactionSuccessful = true;
+                connection.setAutoCommit(false);
+            }
+        } catch (SQLException e) {
+            transactionDepth--;
+            lock.unlock();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void endTransaction(boolean isOperationSuccessful) {
+        try {
+            isTransactionSuccessful &= isOperationSuccessful;
+            if (--transactionDepth == 0) {
+                if (isTransactionSuccessful) {
+                    connection.commit();
+                } else {
+                    connection.rollback();
+                }
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void appendClause(StringBuilder query, String keyword, String clause) {
+        if (clause != null && !clause.isEmpty()) {
+            query.append(keyword).append(clause);
+        }
+    }
+
+    private static void bind(PreparedStatement statement, String[] args, int from) throws SQLException {
+        if (args == null) {
+            return;
+        }
+        for (int i = 0; i < args.length; i++) {
+            statement.setString(from + i, args[i]);
+        }
+    }
+
+    private static List<String> keys(JSONObject model) {
+        List<String> keys = new ArrayList<>();
+        Iterator<String> iterator = model.keys();
+        while (iterator.hasNext()) {
+            keys.add(iterator.next());
+        }
+        return keys;
+    }
+
+    private static Object toSqlValue(Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            return null;
+        }
+        if (value instanceof Boolean) {
+            return ((Boolean) value) ? 1 : 0;
+        }
+        if (value instanceof Number || value instanceof String) {
+            return value;
+        }
+        return value.toString();
+    }
+
+    private static String join(String[] values) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            joined.append(i > 0 ? ", " : "").append(values[i]);
+        }
+        return joined.toString();
+    }
+
+    private static JSONArray toJSONArray(ResultSet resultSet) throws SQLException, JSONException {
+        JSONArray rows = new JSONArray();
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        while (resultSet.next()) {
+            JSONObject row = new JSONObject();
+            for (int i = 1; i <= columnCount; i++) {
+                Object value = resultSet.getObject(i);
+                row.put(metaData.getColumnLabel(i), value != null ? value : JSONObject.NULL);
+            }
+            rows.put(row);
+        }
+        return rows;
+    }
+}
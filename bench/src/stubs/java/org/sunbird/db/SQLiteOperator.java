@@ -0,0 +1,26 @@
+package org.sunbird.db;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Stand-in for the operator the app's database plugin hands out, with the same calls.
+ */
+public interface SQLiteOperator {
+
+    JSONArray execute(String query) throws JSONException;
+
+    JSONArray read(boolean distinct, String table, String[] columns, String selection, String[] selectionArgs,
+                   String groupBy, String having, String orderBy, String limit) throws JSONException;
+
+    long insert(String table, JSONObject model) throws JSONException;
+
+    long update(String table, String whereClause, String[] whereArgs, JSONObject model) throws JSONException;
+
+    long delete(String table, String whereClause, String[] whereArgs) throws JSONException;
+
+    void beginTransaction();
+
+    void endTransaction(boolean isOperationSuccessful);
+}
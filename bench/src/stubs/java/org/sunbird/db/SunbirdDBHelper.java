@@ -0,0 +1,44 @@
+package org.sunbird.db;
+
+/**
+ * Stand-in for the app's database helper. The database is a SQLite file opened through JDBC with
+ * {@link #open(String)}, holding the app-owned network_queue and no_sql tables.
+ */
+public class SunbirdDBHelper {
+
+    private static SunbirdDBHelper sInstance;
+
+    private final JdbcSQLiteOperator operator;
+
+    private SunbirdDBHelper(JdbcSQLiteOperator operator) {
+        this.operator = operator;
+    }
+
+    /**
+     * Opens, creating it if needed, the database at the given path, and makes it the one
+     * {@link #getInstance()} returns.
+     */
+    public static synchronized SunbirdDBHelper open(String path) {
+        if (sInstance != null) {
+            sInstance.operator.close();
+        }
+        sInstance = new SunbirdDBHelper(new JdbcSQLiteOperator("jdbc:sqlite:" + path));
+        sInstance.operator.createTables();
+        return sInstance;
+    }
+
+    public static synchronized SunbirdDBHelper getInstance() {
+        if (sInstance == null) {
+            throw new IllegalStateException("SunbirdDBHelper.open() has not been called");
+        }
+        return sInstance;
+    }
+
+    public SQLiteOperator operator(boolean external) {
+        return operator;
+    }
+
+    public void close() {
+        operator.close();
+    }
+}
@@ -5,23 +5,45 @@ import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaInterface;
 import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.CordovaWebView;
-import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.sunbird.sync.db.DbService;
 import org.sunbird.sync.db.DbServiceImpl;
+import org.sunbird.sync.db.PayloadCodec;
 import org.sunbird.sync.model.HttpResponse;
 import org.sunbird.sync.model.NetworkQueueModel;
 import org.sunbird.sync.model.Request;
+import org.sunbird.sync.event.EventChannel;
+import org.sunbird.sync.metrics.SyncMetrics;
 import org.sunbird.sync.network.ApiService;
 import org.sunbird.sync.network.ApiServiceImpl;
+import org.sunbird.sync.network.AuthInterceptor;
+import org.sunbird.sync.network.CircuitBreaker;
 import org.sunbird.sync.preference.PreferenceService;
 import org.sunbird.sync.preference.PreferenceServiceImpl;
+import org.sunbird.sync.queue.BackoffPolicy;
+import org.sunbird.sync.queue.CompactionKey;
+import org.sunbird.sync.queue.EnqueueBuffer;
 import org.sunbird.sync.queue.NetworkQueue;
 import org.sunbird.sync.queue.NetworkQueueImpl;
+import org.sunbird.sync.queue.TelemetryCoalescer;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class echoes a string called from JavaScript.
@@ -29,22 +51,126 @@ import java.util.ArrayList;
 public class SyncPlugin extends CordovaPlugin {
 
     private static final String TAG = "Cordova-Plugin-SYNC";
+    private static final int DEFAULT_LANE_CONCURRENCY = 1;
+    private static final long LANE_KEEP_ALIVE_SECONDS = 30;
+    private static final int DEFAULT_TELEMETRY_BATCH_MAX_EVENTS = 2000;
+    private static final int DEFAULT_TELEMETRY_BATCH_MAX_BYTES = 1024 * 1024;
+    private static final int DEFAULT_ENQUEUE_BUFFER_SIZE = 50;
+    private static final int DEFAULT_ENQUEUE_FLUSH_INTERVAL = 500;
+    private static final int DEFAULT_EVENT_BUFFER_SIZE = 100;
+    private static final int DEFAULT_EVENT_FLUSH_INTERVAL = 1000;
+    private static final int DEFAULT_SYNC_DEBOUNCE_INTERVAL = 300;
+    private static final String SYNC_STATS_KEY = "sync_stats";
+    private static final int DEFAULT_LANE_QUOTA = 500;
+    private static final Map<String, Integer> LANE_CONCURRENCY = new HashMap<>();
+    private static final Map<String, Integer> LANE_QUOTA = new HashMap<>();
+
+    /**
+     * What sending an entry means for the rest of the drain, in increasing order of severity.
+     */
+    private enum Outcome {
+        CONTINUE, STOP_LANE, STOP_DRAIN
+    }
+
+    static {
+        LANE_CONCURRENCY.put("telemetry", 2);
+        LANE_QUOTA.put("telemetry", 5000);
+    }
+
     private DbService mDbService;
     private NetworkQueue mNetworkQueue;
     private ApiService mApiService;
     private PreferenceService mPreferenceService;
+    private final Object mSyncLock = new Object();
     private boolean isSyncing;
-    private ArrayList<CallbackContext> mHandler = new ArrayList<>();
-    private JSONObject mLastEvent;
-    private boolean isUnauthorizedErrorThrown;
+    private boolean isSyncRequested;
+    private ScheduledFuture<?> mScheduledSync;
+    private long mSyncDebounceInterval;
+    private volatile boolean isPaused;
+    private EventChannel mEventChannel;
+    private volatile boolean isUnauthorizedErrorThrown;
+    private final Map<String, ExecutorService> mLaneExecutors = new HashMap<>();
+    private TelemetryCoalescer mTelemetryCoalescer;
+    private EnqueueBuffer mEnqueueBuffer;
+    private final BackoffPolicy mBackoffPolicy = new BackoffPolicy();
+    private final ScheduledExecutorService mScheduler = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> mScheduledDrain;
+    private volatile long mCircuitRetryAt;
+    private final SyncMetrics mSyncMetrics = new SyncMetrics();
 
     @Override
     public void initialize(CordovaInterface cordova, CordovaWebView webView) {
         super.initialize(cordova, webView);
         mDbService = new DbServiceImpl();
         mNetworkQueue = new NetworkQueueImpl(mDbService);
-        mApiService = new ApiServiceImpl();
         mPreferenceService = new PreferenceServiceImpl(cordova.getActivity());
+        mSyncDebounceInterval = preferences.getInteger("SyncDebounceInterval", DEFAULT_SYNC_DEBOUNCE_INTERVAL);
+        mEventChannel = new EventChannel(mScheduler, preferences.getInteger("SyncEventBufferSize", DEFAULT_EVENT_BUFFER_SIZE),
+                preferences.getInteger("SyncEventFlushInterval", DEFAULT_EVENT_FLUSH_INTERVAL));
+        mApiService = new ApiServiceImpl(new AuthInterceptor(mPreferenceService), new CircuitBreaker.Listener() {
+            @Override
+            public void onStateChanged(String host, CircuitBreaker.State state, long retryAt) {
+                onCircuitStateChanged(host, state, retryAt);
+            }
+        });
+        mEnqueueBuffer = new EnqueueBuffer(mNetworkQueue, mScheduler, preferences.getInteger("SyncEnqueueBufferSize", DEFAULT_ENQUEUE_BUFFER_SIZE),
+                preferences.getInteger("SyncEnqueueFlushInterval", DEFAULT_ENQUEUE_FLUSH_INTERVAL), new EnqueueBuffer.FlushListener() {
+            @Override
+            public void onFlushed(boolean shouldSync) {
+                if (shouldSync) {
+                    syncNetworkQueue(null);
+                }
+            }
+        });
+        cordova.getThreadPool().execute(new Runnable() {
+            public void run() {
+                mNetworkQueue.migrateLegacyBodies();
+            }
+        });
+        mTelemetryCoalescer = new TelemetryCoalescer(preferences.getInteger("SyncTelemetryBatchMaxEvents", DEFAULT_TELEMETRY_BATCH_MAX_EVENTS),
+                preferences.getInteger("SyncTelemetryBatchMaxBytes", DEFAULT_TELEMETRY_BATCH_MAX_BYTES));
+        int statsFlushInterval = preferences.getInteger("SyncStatsFlushInterval", 0);
+        if (statsFlushInterval > 0) {
+            mScheduler.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    saveSyncStats();
+                }
+            }, statsFlushInterval, statsFlushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Cancels the requests in flight and stops draining while the app is in the background. Cancelled
+     * entries stay queued and go out with the next sync after the app resumes.
+     */
+    @Override
+    public void onPause(boolean multitasking) {
+        isPaused = true;
+        mApiService.cancelAll();
+        mEnqueueBuffer.flush();
+        mNetworkQueue.flush();
+        super.onPause(multitasking);
+    }
+
+    @Override
+    public void onResume(boolean multitasking) {
+        isPaused = false;
+        super.onResume(multitasking);
+    }
+
+    @Override
+    public void onDestroy() {
+        mApiService.shutdown();
+        mScheduler.shutdownNow();
+        mEnqueueBuffer.flush();
+        mNetworkQueue.flush();
+        synchronized (mLaneExecutors) {
+            for (ExecutorService laneExecutor : mLaneExecutors.values()) {
+                laneExecutor.shutdownNow();
+            }
+            mLaneExecutors.clear();
+        }
+        super.onDestroy();
     }
 
     @Override
@@ -55,85 +181,406 @@ public class SyncPlugin extends CordovaPlugin {
         } else if (action.equals("enqueue")) {
             this.enqueue(args, callbackContext);
             return true;
+        } else if (action.equals("enqueueBatch")) {
+            this.enqueueBatch(args, callbackContext);
+            return true;
         } else if (action.equals("onSyncSucces")) {
-            mHandler.add(callbackContext);
+            mEventChannel.addHandler(callbackContext);
+            return true;
+        } else if (action.equals("subscribeSyncEvents")) {
+            mEventChannel.subscribe(callbackContext);
+            return true;
+        } else if (action.equals("getSyncStats")) {
+            this.getSyncStats(callbackContext);
             return true;
         }
 
         return false;
     }
 
+    /**
+     * Asks for a drain. Requests arriving within the debounce window of the first one collapse into a
+     * single drain, and only one drain runs at a time: a request made while one is running is
+     * remembered and answered by one more drain once it finishes.
+     */
     private void syncNetworkQueue(CallbackContext callbackContext) {
-        cordova.getThreadPool().execute(new Runnable() {
-            public void run() {
-                try {
-                    mNetworkQueue.seed();
-                    while (!mNetworkQueue.isEmpty()) {
-                        isSyncing = true;
-                        NetworkQueueModel networkQueueModel = mNetworkQueue.peek();
-                        HttpResponse httpResponse = mApiService.process(networkQueueModel.getRequest());
-                        if (httpResponse != null) {
-                            if (httpResponse.getStatus() >= 200 && httpResponse.getStatus() < 300) {
-                                handlePostAPIActions(networkQueueModel.getType(), httpResponse);
-                                mNetworkQueue.dequeue(false);
-                                publishSuccessResult(networkQueueModel, httpResponse);
-                            } else if (httpResponse.getStatus() == 400) {
-                                publishEvent("error", "BAD_REQUEST");
-                                mNetworkQueue.dequeue(true);
-                                continue;
-                            } else if (httpResponse.getStatus() == 401 || httpResponse.getStatus() == 403) {
-                                if (networkQueueModel.getRequest().getNoOfFailureSync() >= 2) {
-                                    if(!isUnauthorizedErrorThrown){
-                                        isUnauthorizedErrorThrown = true;
-                                        publishEvent("network_queue_error", "UnAuthorized");
-                                        handleUnAuthorizedError(networkQueueModel, httpResponse);
-                                        mNetworkQueue.dequeue(true);
-                                    } else{
-                                        handleUnAuthorizedError(networkQueueModel, httpResponse);
-                                        mNetworkQueue.dequeue(true);
-                                    }
-                                } else {
-                                    Request request = networkQueueModel.getRequest();
-                                    int noOfFailureSyncs = request.getNoOfFailureSync() + 1;
-                                    request.setNoOfFailureSync(noOfFailureSyncs++);
-                                    JSONObject model = new JSONObject();
-                                    model.put("request", request.toJSON().toString());
-                                    mDbService.update("msg_id", new String[]{networkQueueModel.getId()}, model);
-                                    handleUnAuthorizedError(networkQueueModel, httpResponse);
-                                    mNetworkQueue.dequeue(true);
-                                }
-                                continue;
-                            } else if (httpResponse.getStatus() == -3) {
-                                publishEvent(networkQueueModel.getType() + "_error", "NETWORK_ERROR");
-                                mNetworkQueue.dequeue(true);
-                                break;
-                            } else {
-                                publishEvent(networkQueueModel.getType() + "_error", httpResponse.getError());
-                                mNetworkQueue.dequeue(true);
-                                continue;
-                            }
+        synchronized (mSyncLock) {
+            if (isSyncing) {
+                isSyncRequested = true;
+                return;
+            }
+            if (mScheduledSync != null || mScheduler.isShutdown()) {
+                return;
+            }
+            mScheduledSync = mScheduler.schedule(new Runnable() {
+                public void run() {
+                    synchronized (mSyncLock) {
+                        mScheduledSync = null;
+                        if (isSyncing) {
+                            isSyncRequested = true;
+                            return;
                         }
+                        isSyncing = true;
                     }
-                    isSyncing = false;
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    isSyncing = false;
+                    cordova.getThreadPool().execute(new Runnable() {
+                        public void run() {
+                            drainNetworkQueue();
+                        }
+                    });
+                }
+            }, mSyncDebounceInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Drains the queue through one lane per entry type. Each lane runs on its own bounded executor,
+     * so a slow telemetry upload never holds back course_progress or course_assesment submissions.
+     * Lanes with a concurrency of one send strictly in queue order.
+     */
+    private void drainNetworkQueue() {
+        try {
+            long startTime = System.currentTimeMillis();
+            mEnqueueBuffer.flush();
+            mNetworkQueue.seed();
+            final AtomicBoolean isDrainAborted = new AtomicBoolean(false);
+            List<Future<?>> workers = new ArrayList<>();
+            for (final String type : mNetworkQueue.getTypes()) {
+                ExecutorService laneExecutor = getLaneExecutor(type);
+                final AtomicInteger laneQuota = new AtomicInteger(getLaneQuota(type));
+                for (int i = 0; i < getLaneConcurrency(type); i++) {
+                    workers.add(laneExecutor.submit(new Runnable() {
+                        public void run() {
+                            drainLane(type, laneQuota, isDrainAborted);
+                        }
+                    }));
                 }
             }
-        });
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            mSyncMetrics.recordDrain(System.currentTimeMillis() - startTime);
+            mNetworkQueue.flush();
+            mEventChannel.flush();
+            scheduleNextDrain(startTime);
+        } catch (Exception e) {
+            e.printStackTrace();
+            mNetworkQueue.flush();
+        }
+
+        boolean shouldRerun;
+        synchronized (mSyncLock) {
+            isSyncing = false;
+            shouldRerun = isSyncRequested;
+            isSyncRequested = false;
+        }
+        if (shouldRerun) {
+            syncNetworkQueue(null);
+        }
+    }
+
+    /**
+     * Sends the lane's entries until it is empty or has used up its quota for this drain. A lane that
+     * hits its quota asks for another drain, which re-seeds first, so entries that became due or were
+     * enqueued meanwhile are ranked against the rest of the backlog before it continues.
+     */
+    private void drainLane(String type, AtomicInteger laneQuota, AtomicBoolean isDrainAborted) {
+        if (type.equalsIgnoreCase("telemetry")) {
+            drainTelemetryLane(type, laneQuota, isDrainAborted);
+            return;
+        }
+        NetworkQueueModel networkQueueModel;
+        while (!isDrainStopped(isDrainAborted) && hasLaneQuota(type, laneQuota) && (networkQueueModel = mNetworkQueue.poll(type)) != null) {
+            laneQuota.decrementAndGet();
+            try {
+                if (!shouldContinue(processNetworkQueueModel(networkQueueModel), isDrainAborted)) {
+                    return;
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                mNetworkQueue.dequeue(networkQueueModel, true);
+            }
+        }
+    }
+
+    private boolean shouldContinue(Outcome outcome, AtomicBoolean isDrainAborted) {
+        if (outcome == Outcome.STOP_DRAIN) {
+            isDrainAborted.set(true);
+        }
+        return outcome == Outcome.CONTINUE;
+    }
+
+    private boolean isDrainStopped(AtomicBoolean isDrainAborted) {
+        return isPaused || isDrainAborted.get();
+    }
+
+    /**
+     * Another drain is only asked for when the lane is out of quota with entries still left in it.
+     */
+    private boolean hasLaneQuota(String type, AtomicInteger laneQuota) {
+        if (laneQuota.get() > 0) {
+            return true;
+        }
+        if (!mNetworkQueue.isEmpty(type)) {
+            synchronized (mSyncLock) {
+                isSyncRequested = true;
+            }
+        }
+        return false;
+    }
+
+    private void drainTelemetryLane(String type, AtomicInteger laneQuota, AtomicBoolean isDrainAborted) {
+        List<NetworkQueueModel> networkQueueModels;
+        while (!isDrainStopped(isDrainAborted) && hasLaneQuota(type, laneQuota)) {
+            networkQueueModels = mNetworkQueue.poll(type, mTelemetryCoalescer.getMaxEventCount(), mTelemetryCoalescer.getMaxSize());
+            if (networkQueueModels.isEmpty()) {
+                return;
+            }
+            laneQuota.addAndGet(-networkQueueModels.size());
+            try {
+                if (!shouldContinue(processTelemetryBatch(networkQueueModels), isDrainAborted)) {
+                    return;
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                // Hands back whatever the batch left unsettled; the next seed re-reads the lane.
+                for (NetworkQueueModel networkQueueModel : networkQueueModels) {
+                    mNetworkQueue.dequeue(networkQueueModel, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a run of telemetry entries, merging consecutive entries for the same endpoint into one
+     * request. A merged request is acknowledged for all of its entries at once; if it fails, every
+     * entry is settled as if it had been sent on its own.
+     */
+    private Outcome processTelemetryBatch(List<NetworkQueueModel> networkQueueModels) throws JSONException {
+        List<NetworkQueueModel> batch = new ArrayList<>();
+        List<Request> requests = new ArrayList<>();
+        Outcome outcome = Outcome.CONTINUE;
+        for (NetworkQueueModel networkQueueModel : networkQueueModels) {
+            if (outcome != Outcome.CONTINUE) {
+                mNetworkQueue.dequeue(networkQueueModel, true);
+                continue;
+            }
+            Request request = mNetworkQueue.loadRequest(networkQueueModel);
+            if (request == null) {
+                mNetworkQueue.dequeue(networkQueueModel, true);
+                continue;
+            }
+            if (!requests.isEmpty() && !mTelemetryCoalescer.canMerge(requests.get(0), request)) {
+                outcome = sendTelemetryBatch(batch, requests);
+                batch.clear();
+                requests.clear();
+                if (outcome != Outcome.CONTINUE) {
+                    mNetworkQueue.dequeue(networkQueueModel, true);
+                    continue;
+                }
+            }
+            batch.add(networkQueueModel);
+            requests.add(request);
+        }
+        if (outcome == Outcome.CONTINUE && !batch.isEmpty()) {
+            outcome = sendTelemetryBatch(batch, requests);
+        }
+        return outcome;
+    }
+
+    private Outcome sendTelemetryBatch(List<NetworkQueueModel> batch, List<Request> requests) throws JSONException {
+        Request mergedRequest = batch.size() > 1 ? mTelemetryCoalescer.merge(requests) : null;
+        if (mergedRequest == null) {
+            return sendTelemetryEntries(batch, requests);
+        }
+
+        HttpResponse httpResponse = mApiService.process(mergedRequest);
+        mSyncMetrics.recordResponse("telemetry", httpResponse);
+        if (httpResponse != null && httpResponse.getStatus() == 400) {
+            // One malformed entry must not keep failing the whole batch, so fall back to sending them one by one.
+            return sendTelemetryEntries(batch, requests);
+        }
+        if (httpResponse != null && httpResponse.getStatus() >= 200 && httpResponse.getStatus() < 300) {
+            handlePostAPIActions("telemetry", httpResponse);
+            mNetworkQueue.dequeue(batch);
+            int syncedEventCount = 0;
+            for (NetworkQueueModel networkQueueModel : batch) {
+                JSONObject config = networkQueueModel.getConfig();
+                if (config != null && config.optBoolean("shouldPublishResult")) {
+                    syncedEventCount += networkQueueModel.getEventCount();
+                }
+            }
+            if (syncedEventCount > 0) {
+                publishEvent("syncedEventCount", syncedEventCount);
+            }
+            return Outcome.CONTINUE;
+        }
+
+        Outcome outcome = Outcome.CONTINUE;
+        for (int i = 0; i < batch.size(); i++) {
+            Outcome entryOutcome = handleResponse(batch.get(i), requests.get(i), httpResponse);
+            if (entryOutcome.compareTo(outcome) > 0) {
+                outcome = entryOutcome;
+            }
+        }
+        return outcome;
+    }
+
+    private Outcome sendTelemetryEntries(List<NetworkQueueModel> batch, List<Request> requests) throws JSONException {
+        Outcome outcome = Outcome.CONTINUE;
+        for (int i = 0; i < batch.size(); i++) {
+            if (outcome == Outcome.CONTINUE) {
+                outcome = processNetworkQueueModel(batch.get(i), requests.get(i));
+            } else {
+                mNetworkQueue.dequeue(batch.get(i), true);
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * Sends one entry and settles it in the queue.
+     */
+    private Outcome processNetworkQueueModel(NetworkQueueModel networkQueueModel) throws JSONException {
+        Request request = mNetworkQueue.loadRequest(networkQueueModel);
+        if (request == null) {
+            mNetworkQueue.dequeue(networkQueueModel, true);
+            return Outcome.CONTINUE;
+        }
+        return processNetworkQueueModel(networkQueueModel, request);
+    }
+
+    private Outcome processNetworkQueueModel(NetworkQueueModel networkQueueModel, Request request) throws JSONException {
+        HttpResponse httpResponse = mApiService.process(request);
+        mSyncMetrics.recordResponse(networkQueueModel.getType(), httpResponse);
+        return handleResponse(networkQueueModel, request, httpResponse);
     }
 
-    private void updateFailureCount(NetworkQueueModel networkQueueModel) throws JSONException{
-        if (networkQueueModel.getRequest().getNoOfFailureSync() >= 5 ) {
-            mNetworkQueue.dequeue(false);
+    private Outcome handleResponse(NetworkQueueModel networkQueueModel, Request request, HttpResponse httpResponse) throws JSONException {
+        if (httpResponse == null) {
+            mNetworkQueue.dequeue(networkQueueModel, true);
+            return Outcome.CONTINUE;
+        }
+        if (httpResponse.getStatus() >= 200 && httpResponse.getStatus() < 300) {
+            handlePostAPIActions(networkQueueModel.getType(), httpResponse);
+            mNetworkQueue.dequeue(networkQueueModel, false);
+            publishSuccessResult(networkQueueModel, httpResponse);
+        } else if (httpResponse.getStatus() == 400) {
+            publishEvent("error", "BAD_REQUEST");
+            rescheduleAfterFailure(networkQueueModel, httpResponse);
+        } else if (httpResponse.getStatus() == 401 || httpResponse.getStatus() == 403) {
+            if (request.getNoOfFailureSync() >= 2) {
+                if(!isUnauthorizedErrorThrown){
+                    isUnauthorizedErrorThrown = true;
+                    publishEvent("network_queue_error", "UnAuthorized");
+                }
+                rescheduleAfterFailure(networkQueueModel, httpResponse);
+            } else {
+                int noOfFailureSyncs = request.getNoOfFailureSync() + 1;
+                request.setNoOfFailureSync(noOfFailureSyncs++);
+                JSONObject model = new JSONObject();
+                model.put("failure_count", request.getNoOfFailureSync());
+                mNetworkQueue.update(networkQueueModel, model);
+                rescheduleAfterFailure(networkQueueModel, httpResponse);
+            }
+        } else if (httpResponse.getStatus() == -5) {
+            // The host's circuit is open, so nothing was sent. Only this lane stops; lanes sending to
+            // other hosts carry on, and this one resumes once the circuit half-opens.
+            mNetworkQueue.dequeue(networkQueueModel, true);
+            return Outcome.STOP_LANE;
+        } else if (httpResponse.getStatus() == -3) {
+            publishEvent(networkQueueModel.getType() + "_error", "NETWORK_ERROR");
+            rescheduleAfterFailure(networkQueueModel, httpResponse);
+            return Outcome.STOP_DRAIN;
+        } else {
+            publishEvent(networkQueueModel.getType() + "_error", httpResponse.getError());
+            rescheduleAfterFailure(networkQueueModel, httpResponse);
+        }
+        return Outcome.CONTINUE;
+    }
+
+    private void rescheduleAfterFailure(NetworkQueueModel networkQueueModel, HttpResponse httpResponse) {
+        long nextAttemptAt = mBackoffPolicy.getNextAttemptAt(httpResponse.getStatus(), networkQueueModel.getAttempts());
+        mNetworkQueue.reschedule(networkQueueModel, nextAttemptAt, httpResponse.getStatus());
+        mSyncMetrics.recordRetry(networkQueueModel.getType(), networkQueueModel.getAttempts());
+    }
+
+    private void onCircuitStateChanged(String host, CircuitBreaker.State state, long retryAt) {
+        if (state == CircuitBreaker.State.OPEN) {
+            mCircuitRetryAt = retryAt;
+        }
+        try {
+            JSONObject circuitState = new JSONObject();
+            circuitState.put("host", host);
+            circuitState.put("state", state.name());
+            publishEvent("circuit_breaker", circuitState);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Arms a timer that starts a drain when the earliest backed off entry becomes due. Entries backed
+     * off during the drain that started at drainStartTime count too, so one that became due before the
+     * drain ended starts the next one right away. While a circuit is open no drain starts before it
+     * is ready to let a probe through, since every send would be short-circuited until then.
+     */
+    private void scheduleNextDrain(long drainStartTime) {
+        long nextAttemptAt = mNetworkQueue.getNextAttemptAt(drainStartTime);
+        long circuitRetryAt = mCircuitRetryAt;
+        if (circuitRetryAt > System.currentTimeMillis()) {
+            nextAttemptAt = Math.max(nextAttemptAt, circuitRetryAt);
+        }
+        synchronized (mScheduler) {
+            if (mScheduledDrain != null) {
+                mScheduledDrain.cancel(false);
+                mScheduledDrain = null;
+            }
+            if (nextAttemptAt > 0 && !mScheduler.isShutdown()) {
+                long delay = Math.max(0, nextAttemptAt - System.currentTimeMillis());
+                mScheduledDrain = mScheduler.schedule(new Runnable() {
+                    public void run() {
+                        syncNetworkQueue(null);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private int getLaneQuota(String type) {
+        Integer quota = LANE_QUOTA.get(type);
+        return quota != null ? quota : DEFAULT_LANE_QUOTA;
+    }
+
+    private int getLaneConcurrency(String type) {
+        Integer concurrency = LANE_CONCURRENCY.get(type);
+        return concurrency != null ? concurrency : DEFAULT_LANE_CONCURRENCY;
+    }
+
+    private ExecutorService getLaneExecutor(String type) {
+        synchronized (mLaneExecutors) {
+            ExecutorService laneExecutor = mLaneExecutors.get(type);
+            if (laneExecutor == null) {
+                int concurrency = getLaneConcurrency(type);
+                ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(concurrency, concurrency,
+                        LANE_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+                threadPoolExecutor.allowCoreThreadTimeOut(true);
+                laneExecutor = threadPoolExecutor;
+                mLaneExecutors.put(type, laneExecutor);
+            }
+            return laneExecutor;
+        }
+    }
+
+    private void updateFailureCount(NetworkQueueModel networkQueueModel, Request request) throws JSONException{
+        if (request.getNoOfFailureSync() >= 5 ) {
+            mNetworkQueue.dequeue(networkQueueModel, false);
         } else {
-            Request request = networkQueueModel.getRequest();
             int noOfFailureSyncs = request.getNoOfFailureSync() + 1;
             request.setNoOfFailureSync(noOfFailureSyncs++);
             JSONObject model = new JSONObject();
-            model.put("request", request.toJSON().toString());
-            mDbService.update("msg_id", new String[]{networkQueueModel.getId()}, model);
-            mNetworkQueue.dequeue(true);
+            model.put("failure_count", request.getNoOfFailureSync());
+            mNetworkQueue.update(networkQueueModel, model);
+            mNetworkQueue.dequeue(networkQueueModel, true);
         }
     }
 
@@ -174,9 +621,7 @@ public class SyncPlugin extends CordovaPlugin {
     }
 
     private void publishEvent(String key, Object value) throws JSONException {
-        mLastEvent = new JSONObject();
-        mLastEvent.put(key, value);
-        consumeEvents();
+        mEventChannel.publish(key, value);
     }
 
     private void postProcessTelemetrySync(HttpResponse httpResponse) throws JSONException {
@@ -209,30 +654,25 @@ public class SyncPlugin extends CordovaPlugin {
         }
     }
 
-    private void handleUnAuthorizedError(NetworkQueueModel networkQueueModel, HttpResponse httpResponse) throws JSONException {
-        Request request = networkQueueModel.getRequest();
-        JSONObject headers = request.getHeaders();
-        String response = httpResponse.getError();
-        JSONObject responseObject = null;
-        if (response != null) {
-            responseObject = new JSONObject(response);
-        }
-
-        if ((responseObject != null && "Unauthorized".equalsIgnoreCase(responseObject.optString("message"))) || httpResponse.getStatus() == 403) {
-            headers.put("Authorization", "Bearer " + mPreferenceService.getBearerToken());
-        } else {
-            if (mPreferenceService.getUserToken() != null) {
-                headers.put("X-Authenticated-User-Token", mPreferenceService.getUserToken());
-            }
-            if (mPreferenceService.getManagedUserToken() != null) {
-                headers.put("X-Authenticated-For", mPreferenceService.getManagedUserToken());
+    private void getSyncStats(CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(new Runnable() {
+            public void run() {
+                try {
+                    callbackContext.success(mSyncMetrics.toJSON(mDbService.readQueueStats()));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    callbackContext.error(e.getMessage());
+                }
             }
-        }
+        });
+    }
 
-        request.setHeaders(headers);
-        JSONObject model = new JSONObject();
-        model.put("request", request.toJSON().toString());
-        mDbService.update("msg_id", new String[]{networkQueueModel.getId()}, model);
+    private void saveSyncStats() {
+        try {
+            mDbService.saveNoSql(SYNC_STATS_KEY, mSyncMetrics.toJSON(mDbService.readQueueStats()).toString());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
     }
 
     private void enqueue(JSONArray args, CallbackContext callbackContext) {
@@ -242,15 +682,45 @@ public class SyncPlugin extends CordovaPlugin {
                     Object data = args.get(0);
                     JSONObject request = (JSONObject) args.get(1);
                     boolean shouldSync = args.getBoolean(2);
-                    String networkRequest = request.getString("request");
-                    JSONObject jsonNetworkObject = new JSONObject(networkRequest);
-                    jsonNetworkObject.put("body", data);
-                    request.put("request", jsonNetworkObject.toString());
-                    mDbService.insert(request);
-                    if (!isSyncing && shouldSync) {
+                    mEnqueueBuffer.add(toNetworkQueueEntry(data, request), shouldSync, new EnqueueBuffer.Callback() {
+                        @Override
+                        public void onSuccess(long id) {
+                            callbackContext.success();
+                        }
+
+                        @Override
+                        public void onError(String error) {
+                            callbackContext.error(error);
+                        }
+                    });
+                } catch (Exception e) {
+                    callbackContext.error(e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Enqueues several (data, model) pairs with a single insert transaction, and triggers at most one
+     * sync once they are committed. Succeeds with the row ids assigned to the entries, in order.
+     */
+    private void enqueueBatch(JSONArray args, CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(new Runnable() {
+            public void run() {
+                try {
+                    JSONArray items = args.getJSONArray(0);
+                    boolean shouldSync = args.getBoolean(1);
+                    List<JSONObject> requests = new ArrayList<>();
+                    for (int i = 0; i < items.length(); i++) {
+                        JSONObject item = items.getJSONObject(i);
+                        requests.add(toNetworkQueueEntry(item.get("data"), item.getJSONObject("model")));
+                    }
+                    mEnqueueBuffer.flush();
+                    List<Long> ids = mNetworkQueue.enqueue(requests);
+                    if (shouldSync && !ids.isEmpty()) {
                         syncNetworkQueue(callbackContext);
                     }
-                    callbackContext.success();
+                    callbackContext.success(new JSONArray(ids));
                 } catch (Exception e) {
                     callbackContext.error(e.getMessage());
                 }
@@ -258,22 +728,33 @@ public class SyncPlugin extends CordovaPlugin {
         });
     }
 
-    private void consumeEvents() {
-        if (this.mHandler.size() == 0 || mLastEvent == null) {
-            return;
+    /**
+     * The body goes into its own column next to the request envelope, which is stored exactly as
+     * received. The body is kept as is too, unless the entry opted into gzip compression, in which
+     * case it is stored compressed and later sent without being decompressed. The compaction key is
+     * taken from the body before it is encoded.
+     */
+    private JSONObject toNetworkQueueEntry(Object data, JSONObject request) throws IOException, JSONException {
+        String codec = PayloadCodec.IDENTITY;
+        String config = request.optString("config", null);
+        if (config != null && config.contains(PayloadCodec.GZIP)) {
+            String compression = new JSONObject(config).optString("compression", null);
+            String serializer = new JSONObject(request.getString("request")).optString("serializer");
+            codec = PayloadCodec.getCodec(serializer, compression);
         }
-
-        for (CallbackContext callback : this.mHandler) {
-            final PluginResult result = new PluginResult(PluginResult.Status.OK, mLastEvent);
-            result.setKeepCallback(true);
-            callback.sendPluginResult(result);
-            callback.success(mLastEvent);
+        if (data != null && data != JSONObject.NULL) {
+            String body = data.toString();
+            request.put("body", PayloadCodec.encode(body, codec));
+            if (PayloadCodec.GZIP.equals(codec)) {
+                request.put("body_size", body.getBytes("UTF-8").length);
+            }
         }
-
-        if(mHandler!= null){
-            mHandler.clear();
+        request.put("body_codec", codec);
+        String compactionKey = CompactionKey.extract(data, config);
+        if (compactionKey != null) {
+            request.put("compaction_key", compactionKey);
         }
-        mLastEvent = null;
+        return request;
     }
 
 }
@@ -3,14 +3,26 @@ package org.sunbird.sync.db;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.sunbird.sync.model.NetworkQueueModel;
+
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by swayangjit on 27/3/20.
  */
 public interface DbService {
-    JSONArray seed() throws JSONException;
+    JSONArray seed(String type, NetworkQueueModel after, int limit, long now) throws JSONException;
+    JSONArray readTypes() throws JSONException;
+    JSONArray readTypesDueSince(long since, long now) throws JSONException;
+    long readNextAttemptAt(long since) throws JSONException;
+    JSONArray readQueueStats() throws JSONException;
+    JSONObject readRequest(String msgId) throws JSONException;
+    JSONArray readLegacyBodies(int limit) throws JSONException;
     long insert(JSONObject request) throws JSONException;
-    long delete(String id) throws  JSONException;
+    List<Long> insert(List<JSONObject> requests) throws JSONException;
+    long acknowledge(List<String> deletedMsgIds, Map<String, JSONObject> updatesByMsgId) throws JSONException;
     long update(String coloumnName, String[] whereArgs, JSONObject request) throws JSONException;
+    long saveNoSql(String key, String value) throws JSONException;
     JSONArray read(String table, String[] coloumns, String selection, String selectionArgs) throws JSONException;
 }
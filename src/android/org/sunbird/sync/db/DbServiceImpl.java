@@ -5,27 +5,183 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.sunbird.db.SQLiteOperator;
 import org.sunbird.db.SunbirdDBHelper;
+import org.sunbird.sync.model.NetworkQueueModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by swayangjit on 27/3/20.
  */
 public class DbServiceImpl implements DbService {
+    private static final String SEED_ORDER = "schedule_rank ASC, priority ASC, _id ASC";
+    private static final String[] SEED_COLUMNS = new String[]{"_id", "msg_id", "type", "priority", "timestamp", "config", "item_count",
+            "attempts", "next_attempt_at", "compaction_key", "schedule_rank", "length(request) + IFNULL(length(body), 0) AS size"};
+    private static final String[][] NETWORK_QUEUE_COLUMNS = new String[][]{
+            {"attempts", "INTEGER NOT NULL DEFAULT 0"},
+            {"next_attempt_at", "INTEGER NOT NULL DEFAULT 0"},
+            {"body", "TEXT"},
+            {"body_codec", "TEXT"},
+            {"body_size", "INTEGER"},
+            {"failure_count", "INTEGER NOT NULL DEFAULT 0"},
+            {"last_status", "INTEGER"},
+            {"schedule_rank", "INTEGER"},
+            {"compaction_key", "TEXT"}
+    };
+    private static volatile boolean sIsSchemaUpgraded;
+    private static final int MAX_SQL_VARIABLES = 500;
+    private static final String SEED_SELECTION = "type = ? AND next_attempt_at <= ?";
+    private static final String SEED_AFTER_SELECTION = "type = ? AND next_attempt_at <= ?"
+            + " AND (schedule_rank > ? OR (schedule_rank = ? AND (priority > ? OR (priority = ? AND _id > ?))))";
+
+    /**
+     * Reads the next window of one type's entries that are due by now, in dispatch order, starting
+     * right after the given entry. Keyset paging keeps every window a bounded indexed read, however
+     * long the backlog is, and only metadata columns are read; requests are loaded per entry via
+     * {@link #readRequest(String)}.
+     */
     @Override
-    public JSONArray seed() throws JSONException {
-        JSONArray resultArray = getOperator().execute("SELECT * from network_queue");
-        return resultArray;
+    public JSONArray seed(String type, NetworkQueueModel after, int limit, long now) throws JSONException {
+        if (after == null) {
+            return getOperator().read(false, "network_queue", SEED_COLUMNS, SEED_SELECTION, new String[]{type, String.valueOf(now)},
+                    "", "", SEED_ORDER, String.valueOf(limit));
+        }
+        String scheduleRank = String.valueOf(after.getScheduleRank());
+        String priority = String.valueOf(after.getPriority());
+        String[] selectionArgs = new String[]{type, String.valueOf(now), scheduleRank, scheduleRank, priority, priority, String.valueOf(after.getRowId())};
+        return getOperator().read(false, "network_queue", SEED_COLUMNS, SEED_AFTER_SELECTION, selectionArgs, "", "", SEED_ORDER, String.valueOf(limit));
+    }
+
+    @Override
+    public JSONArray readTypes() throws JSONException {
+        return getOperator().execute("SELECT DISTINCT type from network_queue");
+    }
+
+    /**
+     * Reads the types that have entries whose retry time fell within (since, now], i.e. entries that
+     * were held back when their type was last paged and have become due since.
+     */
+    @Override
+    public JSONArray readTypesDueSince(long since, long now) throws JSONException {
+        return getOperator().execute("SELECT DISTINCT type from network_queue where next_attempt_at > " + since
+                + " AND next_attempt_at <= " + now);
+    }
+
+    /**
+     * Reads the earliest retry time after since, which may already have passed.
+     */
+    @Override
+    public long readNextAttemptAt(long since) throws JSONException {
+        JSONArray resultArray = getOperator().execute("SELECT MIN(next_attempt_at) AS next_attempt_at from network_queue where next_attempt_at > " + since);
+        if (resultArray == null || resultArray.optJSONObject(0) == null) {
+            return 0;
+        }
+        return resultArray.optJSONObject(0).optLong("next_attempt_at", 0);
+    }
+
+    /**
+     * Reads, per type, the number of queued entries and the timestamp of the oldest one.
+     */
+    @Override
+    public JSONArray readQueueStats() throws JSONException {
+        return getOperator().read(false, "network_queue", new String[]{"type", "COUNT(*) AS count", "MIN(timestamp) AS oldest"},
+                "", null, "type", "", "", "");
+    }
+
+    /**
+     * Reads the request envelope of an entry along with its body, which is kept in its own column.
+     * Rows written before the body column existed have neither body nor body_codec, with the body
+     * inside the envelope.
+     */
+    @Override
+    public JSONObject readRequest(String msgId) throws JSONException {
+        JSONArray resultArray = read("network_queue", new String[]{"request", "body", "body_codec", "body_size", "failure_count"},
+                "msg_id = ?", msgId);
+        if (resultArray == null || resultArray.optJSONObject(0) == null) {
+            return null;
+        }
+        return resultArray.optJSONObject(0);
+    }
+
+    @Override
+    public JSONArray readLegacyBodies(int limit) throws JSONException {
+        return getOperator().read(false, "network_queue", new String[]{"msg_id", "request", "body", "config"}, "body_codec IS NULL",
+                null, "", "", "_id ASC", String.valueOf(limit));
     }
 
     @Override
     public long insert(JSONObject request) throws JSONException {
+        if (!request.isNull("compaction_key")) {
+            return insert(Collections.singletonList(request)).get(0);
+        }
         long id = getOperator().insert("network_queue", request);
         return id;
     }
 
+    /**
+     * Inserts all the rows in a single transaction. If any insert fails, none of them are kept.
+     * A row with a compaction_key replaces the rows of its type queued under the same key, which are
+     * deleted in the same transaction.
+     */
     @Override
-    public long delete(String id) throws JSONException {
-        JSONArray resultArray = getOperator().execute("DELETE from network_queue where msg_id='" +id+"'");
-        return 0;
+    public List<Long> insert(List<JSONObject> requests) throws JSONException {
+        SQLiteOperator operator = getOperator();
+        List<Long> ids = new ArrayList<>();
+        boolean isSuccessful = false;
+        operator.beginTransaction();
+        try {
+            for (JSONObject request : requests) {
+                if (!request.isNull("compaction_key")) {
+                    operator.delete("network_queue", "type = ? AND compaction_key = ?",
+                            new String[]{request.optString("type"), request.optString("compaction_key")});
+                }
+                long id = operator.insert("network_queue", request);
+                if (id == -1) {
+                    throw new JSONException("Failed to insert into network_queue: " + request.optString("msg_id"));
+                }
+                ids.add(id);
+            }
+            isSuccessful = true;
+        } finally {
+            operator.endTransaction(isSuccessful);
+        }
+        return ids;
+    }
+
+    /**
+     * Applies a group of acknowledgements in a single transaction: the given rows are deleted with
+     * parameterized IN statements and each update is a parameterized update of its row, so the whole
+     * group costs one commit instead of one per entry.
+     */
+    @Override
+    public long acknowledge(List<String> deletedMsgIds, Map<String, JSONObject> updatesByMsgId) throws JSONException {
+        SQLiteOperator operator = getOperator();
+        long count = 0;
+        boolean isSuccessful = false;
+        operator.beginTransaction();
+        try {
+            for (Map.Entry<String, JSONObject> update : updatesByMsgId.entrySet()) {
+                count += operator.update("network_queue", "msg_id = ?", new String[]{update.getKey()}, update.getValue());
+            }
+            for (int from = 0; from < deletedMsgIds.size(); from += MAX_SQL_VARIABLES) {
+                List<String> chunk = deletedMsgIds.subList(from, Math.min(from + MAX_SQL_VARIABLES, deletedMsgIds.size()));
+                count += operator.delete("network_queue", "msg_id IN (" + placeholders(chunk.size()) + ")", chunk.toArray(new String[0]));
+            }
+            isSuccessful = true;
+        } finally {
+            operator.endTransaction(isSuccessful);
+        }
+        return count;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder("?");
+        for (int i = 1; i < count; i++) {
+            placeholders.append(",?");
+        }
+        return placeholders.toString();
     }
 
     @Override
@@ -33,6 +189,21 @@ public class DbServiceImpl implements DbService {
         return getOperator().update("network_queue", selection+" = ?", whereArgs, model);
     }
 
+    /**
+     * Writes a value to the no_sql table, replacing the one already stored under the key.
+     */
+    @Override
+    public long saveNoSql(String key, String value) throws JSONException {
+        JSONObject model = new JSONObject();
+        model.put("key", key);
+        model.put("value", value);
+        long updatedRows = getOperator().update("no_sql", "key = ?", new String[]{key}, model);
+        if (updatedRows > 0) {
+            return updatedRows;
+        }
+        return getOperator().insert("no_sql", model);
+    }
+
     @Override
     public JSONArray read(String table, String[] coloumns, String selection, String selectionArgs) throws JSONException {
         JSONArray resultArray = getOperator().read(false, table, coloumns, selection, new String[]{selectionArgs}, "", "", "", "");
@@ -40,6 +211,42 @@ public class DbServiceImpl implements DbService {
     }
 
     private SQLiteOperator getOperator() {
-        return SunbirdDBHelper.getInstance().operator(false);
+        SQLiteOperator operator = SunbirdDBHelper.getInstance().operator(false);
+        if (!sIsSchemaUpgraded) {
+            upgradeSchema(operator);
+        }
+        return operator;
+    }
+
+    /**
+     * Adds the columns this plugin keeps alongside the app-owned network_queue schema, once per process.
+     * Rows enqueued before schedule_rank existed get their rank filled in, and the seed order, retry
+     * time and compaction lookups are backed by indexes.
+     */
+    private static synchronized void upgradeSchema(SQLiteOperator operator) {
+        if (sIsSchemaUpgraded) {
+            return;
+        }
+        try {
+            JSONArray tableInfo = operator.execute("PRAGMA table_info(network_queue)");
+            List<String> existingColumns = new ArrayList<>();
+            for (int i = 0; tableInfo != null && i < tableInfo.length(); i++) {
+                existingColumns.add(tableInfo.getJSONObject(i).optString("name"));
+            }
+            for (String[] column : NETWORK_QUEUE_COLUMNS) {
+                if (!existingColumns.contains(column[0])) {
+                    operator.execute("ALTER TABLE network_queue ADD COLUMN " + column[0] + " " + column[1]);
+                }
+            }
+            operator.execute("UPDATE network_queue SET schedule_rank = priority * " + NetworkQueueModel.AGING_INTERVAL
+                    + " + timestamp WHERE schedule_rank IS NULL");
+            operator.execute("CREATE INDEX IF NOT EXISTS network_queue_schedule ON network_queue (type, schedule_rank, priority, _id)");
+            operator.execute("CREATE INDEX IF NOT EXISTS network_queue_next_attempt ON network_queue (next_attempt_at)");
+            operator.execute("CREATE INDEX IF NOT EXISTS network_queue_compaction ON network_queue (type, compaction_key)"
+                    + " WHERE compaction_key IS NOT NULL");
+            sIsSchemaUpgraded = true;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
     }
 }
@@ -0,0 +1,58 @@
+package org.sunbird.sync.db;
+
+import android.util.Base64;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The storage formats of the network_queue body column, tagged per row in body_codec.
+ *
+ * <ul>
+ * <li>{@link #IDENTITY}: the body text exactly as it was enqueued.</li>
+ * <li>{@link #GZIP}: the gzip compressed UTF-8 body, Base64 encoded. Such bodies are sent with
+ * Content-Encoding: gzip straight from storage, so the length they had before compression is
+ * kept in body_size.</li>
+ * </ul>
+ *
+ * Rows without a codec predate the body column and keep their body inside the request envelope.
+ */
+public final class PayloadCodec {
+
+    public static final String IDENTITY = "identity";
+    public static final String GZIP = "gzip";
+
+    private PayloadCodec() {
+    }
+
+    /**
+     * Picks the codec for a body: only JSON bodies of entries that opted into gzip compression are
+     * stored compressed, since those are the only ones that can go out pre-compressed.
+     */
+    public static String getCodec(String serializer, String compression) {
+        return "json".equals(serializer) && GZIP.equals(compression) ? GZIP : IDENTITY;
+    }
+
+    public static String encode(String body, String codec) throws IOException {
+        if (!GZIP.equals(codec)) {
+            return body;
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+        try {
+            gzipOutputStream.write(body.getBytes("UTF-8"));
+        } finally {
+            gzipOutputStream.close();
+        }
+        return Base64.encodeToString(outputStream.toByteArray(), Base64.NO_WRAP);
+    }
+
+    /**
+     * The Content-Encoding a body stored with the given codec has to be sent with, or null when it
+     * is stored as plain text.
+     */
+    public static String getContentEncoding(String codec) {
+        return GZIP.equals(codec) ? GZIP : null;
+    }
+}
@@ -0,0 +1,194 @@
+package org.sunbird.sync.event;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carries sync events to JS. Published events are held in a bounded buffer and delivered together
+ * once per flush window, so a long drain crosses the bridge a few times per second at most instead
+ * of once per entry. While the events wait, syncedEventCount values are summed into one event;
+ * every other event is delivered as published, in order.
+ *
+ * Events stay buffered until there is someone to deliver them to, so nothing published while JS
+ * is between registrations is lost. Only when the buffer is full with nobody listening is the
+ * oldest event dropped.
+ *
+ * There are two kinds of receivers, each with its own buffer:
+ * <ul>
+ * <li>subscribers, kept for the lifetime of the page, which get every batch as a JSONArray of
+ * events;</li>
+ * <li>legacy onSyncSucces handlers, which get events merged into a single object and then have
+ * to register again. An event whose key is already in the object is kept for the next
+ * registration, so no event overwrites another.</li>
+ * </ul>
+ */
+public class EventChannel {
+
+    private static final String SYNCED_EVENT_COUNT = "syncedEventCount";
+
+    private static class PendingEvents {
+        private final List<JSONObject> events = new ArrayList<>();
+        private JSONObject syncedEventCount;
+
+        /**
+         * Appends the event, first dropping the oldest one if the buffer is still full, i.e. if
+         * nobody has been receiving from it.
+         */
+        private void add(String key, Object value, int maxSize) throws JSONException {
+            if (SYNCED_EVENT_COUNT.equals(key) && syncedEventCount != null) {
+                syncedEventCount.put(key, syncedEventCount.optLong(key) + ((Number) value).longValue());
+                return;
+            }
+            if (events.size() >= maxSize) {
+                dropOldest();
+            }
+            JSONObject event = new JSONObject();
+            event.put(key, value);
+            events.add(event);
+            if (SYNCED_EVENT_COUNT.equals(key)) {
+                syncedEventCount = event;
+            }
+        }
+
+        private void remove(int index) {
+            if (events.remove(index) == syncedEventCount) {
+                syncedEventCount = null;
+            }
+        }
+
+        private void clear() {
+            events.clear();
+            syncedEventCount = null;
+        }
+
+        /**
+         * The summed syncedEventCount is never the one dropped, since it stands for every event synced so far.
+         */
+        private void dropOldest() {
+            for (int i = 0; i < events.size(); i++) {
+                if (events.get(i) != syncedEventCount) {
+                    events.remove(i);
+                    return;
+                }
+            }
+        }
+    }
+
+    private final ScheduledExecutorService mScheduler;
+    private final int mMaxPendingEvents;
+    private final long mFlushInterval;
+    private final List<CallbackContext> mSubscribers = new ArrayList<>();
+    private final List<CallbackContext> mHandlers = new ArrayList<>();
+    private final PendingEvents mSubscriberEvents = new PendingEvents();
+    private final PendingEvents mHandlerEvents = new PendingEvents();
+    private ScheduledFuture<?> mScheduledFlush;
+
+    public EventChannel(ScheduledExecutorService scheduler, int maxPendingEvents, long flushInterval) {
+        this.mScheduler = scheduler;
+        this.mMaxPendingEvents = maxPendingEvents;
+        this.mFlushInterval = flushInterval;
+    }
+
+    public synchronized void subscribe(CallbackContext callbackContext) {
+        mSubscribers.add(callbackContext);
+        onReceiverAdded();
+    }
+
+    public synchronized void addHandler(CallbackContext callbackContext) {
+        mHandlers.add(callbackContext);
+        onReceiverAdded();
+    }
+
+    public synchronized void publish(String key, Object value) throws JSONException {
+        if (mSubscriberEvents.events.size() >= mMaxPendingEvents || mHandlerEvents.events.size() >= mMaxPendingEvents) {
+            flush();
+        }
+        mSubscriberEvents.add(key, value, mMaxPendingEvents);
+        mHandlerEvents.add(key, value, mMaxPendingEvents);
+        scheduleFlush();
+    }
+
+    /**
+     * Delivers the pending events now to whoever is there to receive them.
+     */
+    public synchronized void flush() {
+        if (mScheduledFlush != null) {
+            mScheduledFlush.cancel(false);
+            mScheduledFlush = null;
+        }
+
+        if (!mSubscribers.isEmpty() && !mSubscriberEvents.events.isEmpty()) {
+            JSONArray events = new JSONArray();
+            for (JSONObject event : mSubscriberEvents.events) {
+                events.put(event);
+            }
+            for (CallbackContext subscriber : mSubscribers) {
+                PluginResult result = new PluginResult(PluginResult.Status.OK, events);
+                result.setKeepCallback(true);
+                subscriber.sendPluginResult(result);
+            }
+            mSubscriberEvents.clear();
+        }
+
+        if (!mHandlers.isEmpty() && !mHandlerEvents.events.isEmpty()) {
+            JSONObject lastEvent = takeHandlerEvent();
+            for (CallbackContext callback : mHandlers) {
+                final PluginResult result = new PluginResult(PluginResult.Status.OK, lastEvent);
+                result.setKeepCallback(true);
+                callback.sendPluginResult(result);
+                callback.success(lastEvent);
+            }
+            mHandlers.clear();
+        }
+    }
+
+    private void onReceiverAdded() {
+        if (!mSubscriberEvents.events.isEmpty() || !mHandlerEvents.events.isEmpty()) {
+            scheduleFlush();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (mScheduledFlush == null && !mScheduler.isShutdown()) {
+            mScheduledFlush = mScheduler.schedule(new Runnable() {
+                public void run() {
+                    flush();
+                }
+            }, mFlushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Takes the single object the legacy handlers expect off the front of their buffer: events of
+     * different kinds side by side, in the order published, up to the first event whose key is
+     * already in it. That event and the ones after it wait for the next registration.
+     */
+    private JSONObject takeHandlerEvent() {
+        JSONObject mergedEvent = new JSONObject();
+        try {
+            while (!mHandlerEvents.events.isEmpty()) {
+                JSONObject event = mHandlerEvents.events.get(0);
+                Iterator<String> keys = event.keys();
+                String key = keys.next();
+                if (mergedEvent.has(key)) {
+                    break;
+                }
+                mergedEvent.put(key, event.get(key));
+                mHandlerEvents.remove(0);
+            }
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        return mergedEvent;
+    }
+}
@@ -0,0 +1,200 @@
+package org.sunbird.sync.metrics;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.sunbird.sync.model.HttpResponse;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and histograms describing how the sync engine performs, kept per entry type. Recording
+ * is lock free and allocation free once a type has been seen, so it can sit on the send path.
+ *
+ * Queue depth and the age of the oldest entry are not tracked here; they are read from the table
+ * when a snapshot is taken.
+ */
+public class SyncMetrics {
+
+    /**
+     * Upper bounds, in milliseconds, of the latency buckets. Anything slower falls in a last,
+     * unbounded bucket.
+     */
+    private static final long[] LATENCY_BUCKETS = {50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    private static class Histogram {
+        private final AtomicLongArray counts = new AtomicLongArray(LATENCY_BUCKETS.length + 1);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        private void record(long value) {
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS.length && value > LATENCY_BUCKETS[bucket]) {
+                bucket++;
+            }
+            counts.incrementAndGet(bucket);
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long currentMax;
+            while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+            }
+        }
+
+        private JSONObject toJSON() throws JSONException {
+            JSONObject json = new JSONObject();
+            long count = this.count.get();
+            json.put("count", count);
+            json.put("avg", count > 0 ? sum.get() / count : 0);
+            json.put("max", max.get());
+            JSONObject buckets = new JSONObject();
+            for (int i = 0; i < counts.length(); i++) {
+                buckets.put(i < LATENCY_BUCKETS.length ? "le_" + LATENCY_BUCKETS[i] : "inf", counts.get(i));
+            }
+            json.put("buckets", buckets);
+            return json;
+        }
+    }
+
+    private static class TypeMetrics {
+        private final Histogram latency = new Histogram();
+        private final AtomicLong bytesUp = new AtomicLong();
+        private final AtomicLong uncompressedBytesUp = new AtomicLong();
+        private final AtomicLong compressionTime = new AtomicLong();
+        private final AtomicLong bytesDown = new AtomicLong();
+        private final AtomicLong success = new AtomicLong();
+        private final AtomicLong clientError = new AtomicLong();
+        private final AtomicLong serverError = new AtomicLong();
+        private final AtomicLong networkError = new AtomicLong();
+        private final AtomicLong shortCircuited = new AtomicLong();
+        private final AtomicLong cancelled = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong maxAttempts = new AtomicLong();
+    }
+
+    private final ConcurrentHashMap<String, TypeMetrics> typeMetrics = new ConcurrentHashMap<>();
+    private final Histogram drainDuration = new Histogram();
+    private final AtomicLong lastDrainDuration = new AtomicLong();
+    private final AtomicLong lastDrainAt = new AtomicLong();
+    private final long startedAt = System.currentTimeMillis();
+
+    /**
+     * Records the outcome of one request of the given type. A null response stands for a request
+     * that was cancelled.
+     */
+    public void recordResponse(String type, HttpResponse response) {
+        TypeMetrics metrics = getTypeMetrics(type);
+        if (response == null) {
+            metrics.cancelled.incrementAndGet();
+            return;
+        }
+        int status = response.getStatus();
+        if (status == -5) {
+            metrics.shortCircuited.incrementAndGet();
+            return;
+        }
+        metrics.latency.record(response.getDuration());
+        metrics.bytesUp.addAndGet(response.getRequestSize());
+        metrics.uncompressedBytesUp.addAndGet(response.getUncompressedRequestSize());
+        metrics.compressionTime.addAndGet(response.getCompressionTime());
+        metrics.bytesDown.addAndGet(response.getResponseSize());
+        if (status < 0) {
+            metrics.networkError.incrementAndGet();
+        } else if (status >= 500) {
+            metrics.serverError.incrementAndGet();
+        } else if (status >= 400) {
+            metrics.clientError.incrementAndGet();
+        } else {
+            metrics.success.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records that an entry of the given type failed and was scheduled for another attempt, after
+     * the given number of earlier ones.
+     */
+    public void recordRetry(String type, int attempts) {
+        TypeMetrics metrics = getTypeMetrics(type);
+        metrics.retries.incrementAndGet();
+        long currentMax;
+        while (attempts + 1 > (currentMax = metrics.maxAttempts.get()) && !metrics.maxAttempts.compareAndSet(currentMax, attempts + 1)) {
+        }
+    }
+
+    public void recordDrain(long duration) {
+        drainDuration.record(duration);
+        lastDrainDuration.set(duration);
+        lastDrainAt.set(System.currentTimeMillis());
+    }
+
+    /**
+     * A snapshot of every metric. queueStats holds one row per type with its count of queued
+     * entries and the timestamp of its oldest one.
+     */
+    public JSONObject toJSON(JSONArray queueStats) throws JSONException {
+        long now = System.currentTimeMillis();
+        JSONObject types = new JSONObject();
+        for (Map.Entry<String, TypeMetrics> entry : typeMetrics.entrySet()) {
+            TypeMetrics metrics = entry.getValue();
+            JSONObject json = new JSONObject();
+            json.put("latency", metrics.latency.toJSON());
+            json.put("bytesUp", metrics.bytesUp.get());
+            json.put("uncompressedBytesUp", metrics.uncompressedBytesUp.get());
+            json.put("compressionTime", metrics.compressionTime.get());
+            json.put("bytesDown", metrics.bytesDown.get());
+            json.put("retries", metrics.retries.get());
+            json.put("maxAttempts", metrics.maxAttempts.get());
+            JSONObject statuses = new JSONObject();
+            statuses.put("2xx", metrics.success.get());
+            statuses.put("4xx", metrics.clientError.get());
+            statuses.put("5xx", metrics.serverError.get());
+            statuses.put("network_error", metrics.networkError.get());
+            statuses.put("short_circuited", metrics.shortCircuited.get());
+            statuses.put("cancelled", metrics.cancelled.get());
+            json.put("status", statuses);
+            types.put(entry.getKey(), json);
+        }
+
+        JSONObject queue = new JSONObject();
+        if (queueStats != null) {
+            for (int i = 0; i < queueStats.length(); i++) {
+                JSONObject row = queueStats.optJSONObject(i);
+                if (row == null) {
+                    continue;
+                }
+                JSONObject json = new JSONObject();
+                json.put("depth", row.optLong("count"));
+                long oldest = row.optLong("oldest", 0);
+                json.put("oldestEntryAge", oldest > 0 ? Math.max(0, now - oldest) : 0);
+                queue.put(row.optString("type"), json);
+            }
+        }
+
+        JSONObject drain = drainDuration.toJSON();
+        drain.put("last", lastDrainDuration.get());
+        drain.put("lastAt", lastDrainAt.get());
+
+        JSONObject stats = new JSONObject();
+        stats.put("since", startedAt);
+        stats.put("at", now);
+        stats.put("types", types);
+        stats.put("queue", queue);
+        stats.put("drain", drain);
+        return stats;
+    }
+
+    private TypeMetrics getTypeMetrics(String type) {
+        TypeMetrics metrics = typeMetrics.get(type);
+        if (metrics == null) {
+            TypeMetrics newMetrics = new TypeMetrics();
+            metrics = typeMetrics.putIfAbsent(type, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+}
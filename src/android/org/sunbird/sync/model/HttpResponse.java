@@ -24,6 +24,11 @@ public class HttpResponse {
     private boolean isFileOperation;
     private boolean isRawResponse;
     private String error;
+    private long requestSize;
+    private long uncompressedRequestSize;
+    private long compressionTime;
+    private long responseSize;
+    private long duration;
 
     public void setStatus(int status) {
         this.status = status;
@@ -56,6 +61,20 @@ public class HttpResponse {
         this.error = message;
     }
 
+    public void setRequestSize(long uncompressedRequestSize, long requestSize, long compressionTime) {
+        this.uncompressedRequestSize = uncompressedRequestSize;
+        this.requestSize = requestSize;
+        this.compressionTime = compressionTime;
+    }
+
+    public void setResponseSize(long responseSize) {
+        this.responseSize = responseSize;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
     public boolean hasFailed() {
         return this.hasFailed;
     }
@@ -80,6 +99,26 @@ public class HttpResponse {
         return error;
     }
 
+    public long getRequestSize() {
+        return requestSize;
+    }
+
+    public long getUncompressedRequestSize() {
+        return uncompressedRequestSize;
+    }
+
+    public long getCompressionTime() {
+        return compressionTime;
+    }
+
+    public long getResponseSize() {
+        return responseSize;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
     public JSONObject toJSON() throws JSONException {
         JSONObject json = new JSONObject();
 
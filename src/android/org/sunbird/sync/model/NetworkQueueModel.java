@@ -7,26 +7,49 @@ import org.json.JSONObject;
 
 /**
  * Created by swayangjit on 25/3/20.
+ *
+ * Entries are dispatched in order of their schedule rank, their timestamp pushed back by
+ * {@link #AGING_INTERVAL} for every priority level. An entry therefore goes ahead of anything of a
+ * higher priority level enqueued more than one interval after it, so a steady stream of high priority
+ * entries cannot hold a low priority one back forever. The rank never changes while an entry waits,
+ * which keeps the heap and the keyset paging over network_queue valid.
  */
 public class NetworkQueueModel implements Comparable<NetworkQueueModel>{
+    /**
+     * How long an entry waits to catch up with entries one priority level above it. Ranks are
+     * stored in network_queue and read back from there, so changing this only affects entries
+     * enqueued afterwards.
+     */
+    public static final long AGING_INTERVAL = 10 * 60 * 1000;
+
+    private long rowId;
     private String msgId;
     private String type;
     private Integer priority;
     private Integer eventCount;
     private Long timestamp;
-    private Request request;
+    private Long size;
     private String config;
+    private int attempts;
+    private long nextAttemptAt;
+    private String compactionKey;
+    private Long scheduleRank;
 
-    public NetworkQueueModel(String msgId, String type, Integer priority, Long timestamp, String config, Integer eventCount, Request request) {
+    public NetworkQueueModel(long rowId, String msgId, String type, Integer priority, Long timestamp, String config, Integer eventCount, Long size) {
+        this.rowId = rowId;
         this.msgId = msgId;
         this.type = type;
         this.priority = priority;
         this.timestamp = timestamp;
-        this.request = request;
+        this.size = size;
         this.config = config;
         this.eventCount = eventCount;
     }
 
+    public long getRowId() {
+        return rowId;
+    }
+
     public String getId() {
         return msgId;
     }
@@ -43,14 +66,51 @@ public class NetworkQueueModel implements Comparable<NetworkQueueModel>{
         return timestamp;
     }
 
-    public Request getRequest() {
-        return request;
+    public Long getSize() {
+        return size;
     }
 
     public Integer getEventCount() {
         return eventCount;
     }
 
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setRetry(int attempts, long nextAttemptAt) {
+        this.attempts = attempts;
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getCompactionKey() {
+        return compactionKey;
+    }
+
+    public void setCompactionKey(String compactionKey) {
+        this.compactionKey = compactionKey;
+    }
+
+    /**
+     * The rank stored with the entry, or one computed from its priority and timestamp when the
+     * model was not read from network_queue.
+     */
+    public long getScheduleRank() {
+        return scheduleRank != null ? scheduleRank : getScheduleRank(priority, timestamp);
+    }
+
+    public void setScheduleRank(long scheduleRank) {
+        this.scheduleRank = scheduleRank;
+    }
+
+    public static long getScheduleRank(int priority, long timestamp) {
+        return priority * AGING_INTERVAL + timestamp;
+    }
+
     public JSONObject getConfig() throws JSONException {
         if(config != null){
             return new JSONObject(config);
@@ -58,18 +118,20 @@ public class NetworkQueueModel implements Comparable<NetworkQueueModel>{
         return null;
     }
 
+    /**
+     * Orders by schedule rank, then priority, then insertion order. Entries with the same rank and
+     * priority share a timestamp too, so equal ranks are served first in, first out.
+     */
     @Override
     public int compareTo(NetworkQueueModel networkQueueModel) {
-
-        int priority1 = this.getPriority();
-        int priority2 = networkQueueModel.getPriority();
-
-        if (priority2 < priority1)
-            return 1;
-        if (priority2 > priority1)
-            return -1;
-
-        return 0;
+        int result = Long.compare(this.getScheduleRank(), networkQueueModel.getScheduleRank());
+        if (result == 0) {
+            result = this.getPriority().compareTo(networkQueueModel.getPriority());
+        }
+        if (result == 0) {
+            result = Long.compare(this.getRowId(), networkQueueModel.getRowId());
+        }
+        return result;
     }
 
     @Override
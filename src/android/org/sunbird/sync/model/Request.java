@@ -1,6 +1,5 @@
 package org.sunbird.sync.model;
 
-import org.json.JSONException;
 import org.json.JSONObject;
 
 /**
@@ -14,6 +13,9 @@ public class Request {
     private Object body;
     private String serializer;
     private int noOfFailureSync;
+    private String compression;
+    private String contentEncoding;
+    private long bodySize;
 
     public Request(String host, String path, String type, JSONObject headers, String serializer, Object body) {
         this.host = host;
@@ -52,6 +54,37 @@ public class Request {
         return serializer;
     }
 
+    public String getCompression() {
+        return compression;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * The Content-Encoding the body is already encoded with, as Base64 of the encoded bytes, or null
+     * when the body is plain text.
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * The length in bytes the body had before it was encoded with its Content-Encoding, or 0 when unknown.
+     */
+    public long getBodySize() {
+        return bodySize;
+    }
+
+    public void setBodySize(long bodySize) {
+        this.bodySize = bodySize;
+    }
+
     public int getNoOfFailureSync() {
         return noOfFailureSync;
     }
@@ -71,16 +104,4 @@ public class Request {
                 ", serializer='" + serializer + '\'' +
                 '}';
     }
-
-    public JSONObject toJSON() throws JSONException {
-        JSONObject request = new JSONObject();
-        request.put("host", host);
-        request.put("type", type);
-        request.put("path", path);
-        request.put("headers", headers);
-        request.put("serializer", serializer);
-        request.put("body", body);
-        request.put("noOfFailureSync", noOfFailureSync);
-        return request;
-    }
 }
@@ -0,0 +1,12 @@
+package org.sunbird.sync.network;
+
+import org.sunbird.sync.model.HttpResponse;
+
+/**
+ * Receives the outcome of a request sent through {@link ApiService#processAsync}.
+ * It is invoked on the thread that completed the request, and not at all once the request is cancelled.
+ */
+public interface ApiCallback {
+
+    void onResponse(HttpResponse response);
+}
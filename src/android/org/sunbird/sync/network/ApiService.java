@@ -3,10 +3,18 @@ package org.sunbird.sync.network;
 import org.sunbird.sync.model.HttpResponse;
 import org.sunbird.sync.model.Request;
 
+import java.util.concurrent.Future;
+
 /**
  * Created by swayangjit on 29/3/20.
  */
 public interface ApiService {
 
     HttpResponse process(Request request);
+
+    Future<HttpResponse> processAsync(Request request, ApiCallback callback);
+
+    void cancelAll();
+
+    void shutdown();
 }
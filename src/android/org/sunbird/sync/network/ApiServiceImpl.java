@@ -2,13 +2,29 @@ package org.sunbird.sync.network;
 
 import android.util.Log;
 
+import com.silkimen.http.HttpRequest;
+import com.silkimen.http.OkConnectionFactory;
 import com.silkimen.http.TLSConfiguration;
 
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.sunbird.sync.model.HttpResponse;
 import org.sunbird.sync.model.Request;
 
 import java.security.KeyStore;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManagerFactory;
 
 /**
@@ -17,17 +33,177 @@ import javax.net.ssl.TrustManagerFactory;
 public class ApiServiceImpl implements ApiService{
 
     private static final String TAG = "SB-Sync-ApiServiceImpl";
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+    private static final int CIRCUIT_FAILURE_THRESHOLD = 3;
+    private static final long CIRCUIT_OPEN_DURATION = 60 * 1000;
     private TLSConfiguration tlsConfiguration;
+    // Shared by every request, along with the SSL socket factory, so connections and TLS sessions to a host are reused.
+    private final HttpRequest.ConnectionFactory connectionFactory = new OkConnectionFactory();
+    private SSLSocketFactory sslSocketFactory;
+    // Runs the requests sent through processAsync; blocking ones run on the caller's thread.
+    private final ExecutorService executorService = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS);
+    private final Set<ApiCall> activeCalls = Collections.synchronizedSet(new HashSet<ApiCall>());
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_DURATION);
+    // Stamps the auth headers at send time.
+    private final AuthInterceptor authInterceptor;
 
-    public ApiServiceImpl() {
+    public ApiServiceImpl(AuthInterceptor authInterceptor, CircuitBreaker.Listener circuitBreakerListener) {
+        this.authInterceptor = authInterceptor;
+        this.circuitBreaker.setListener(circuitBreakerListener);
         this.initializeTTLConfiguraion();
     }
 
+    /**
+     * Sends the request on the calling thread and blocks until it completes. Returns null when it was cancelled.
+     */
     @Override
     public HttpResponse process(Request request) {
+        try {
+            Future<HttpResponse> call = this.newCall(request, null);
+            if (call instanceof ApiCall) {
+                ((ApiCall) call).run();
+            }
+            return call.get();
+        } catch (CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Log.e(TAG, "An unexpected error occured", e);
+            return null;
+        }
+    }
+
+    @Override
+    public Future<HttpResponse> processAsync(Request request, ApiCallback callback) {
+        Future<HttpResponse> call = this.newCall(request, callback);
+        if (call instanceof ApiCall) {
+            try {
+                this.executorService.execute((ApiCall) call);
+            } catch (RejectedExecutionException e) {
+                call.cancel(false);
+            }
+        }
+        return call;
+    }
+
+    /**
+     * Returns the call that sends the request, not yet started, or one already completed with a
+     * status of -5 when the host's circuit is open.
+     */
+    private Future<HttpResponse> newCall(Request request, ApiCallback callback) {
+        if (!this.circuitBreaker.allowRequest(request.getHost())) {
+            return this.shortCircuit(request, callback);
+        }
+        JSONObject headers;
+        try {
+            headers = this.authInterceptor.intercept(request.getHeaders());
+        } catch (JSONException e) {
+            Log.e(TAG, "An error occured while applying the auth headers", e);
+            headers = request.getHeaders();
+        }
         HttpOperation httpOperation = new HttpOperation(request.getType(), request.getHost() + request.getPath(),
-                request.getSerializer(), request.getBody(), request.getHeaders(), this.tlsConfiguration);
-        return httpOperation.execute();
+                request.getSerializer(), request.getBody(), headers, this.tlsConfiguration,
+                this.connectionFactory, this.getSSLSocketFactory());
+        httpOperation.setCompression(request.getCompression());
+        httpOperation.setContentEncoding(request.getContentEncoding(), request.getBodySize());
+        ApiCall apiCall = new ApiCall(request.getHost(), httpOperation, callback);
+        this.activeCalls.add(apiCall);
+        return apiCall;
+    }
+
+    @Override
+    public void cancelAll() {
+        ApiCall[] apiCalls;
+        synchronized (this.activeCalls) {
+            apiCalls = this.activeCalls.toArray(new ApiCall[0]);
+        }
+        for (ApiCall apiCall : apiCalls) {
+            // Closing the connection unblocks the call; interrupting could hit a caller's thread.
+            apiCall.cancel(false);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        this.executorService.shutdownNow();
+        this.cancelAll();
+    }
+
+    private Future<HttpResponse> shortCircuit(Request request, ApiCallback callback) {
+        HttpResponse response = new HttpResponse();
+        response.setStatus(-5);
+        response.setErrorMessage("Circuit open for host: " + request.getHost());
+        FutureTask<HttpResponse> future = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, response);
+        future.run();
+        if (callback != null) {
+            callback.onResponse(response);
+        }
+        return future;
+    }
+
+    private class ApiCall extends FutureTask<HttpResponse> {
+        private final String host;
+        private final HttpOperation httpOperation;
+        private final ApiCallback callback;
+
+        private ApiCall(final String host, final HttpOperation httpOperation, ApiCallback callback) {
+            super(new Callable<HttpResponse>() {
+                @Override
+                public HttpResponse call() {
+                    long startTime = System.nanoTime();
+                    HttpResponse response = httpOperation.execute();
+                    response.setDuration((System.nanoTime() - startTime) / 1000000);
+                    circuitBreaker.onResponse(host, httpOperation.isCancelled() ? null : response);
+                    return response;
+                }
+            });
+            this.host = host;
+            this.httpOperation = httpOperation;
+            this.callback = callback;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean isCancelled = super.cancel(mayInterruptIfRunning);
+            if (isCancelled) {
+                this.httpOperation.cancel();
+            }
+            return isCancelled;
+        }
+
+        @Override
+        protected void done() {
+            activeCalls.remove(this);
+            if (this.isCancelled()) {
+                circuitBreaker.onResponse(this.host, null);
+                return;
+            }
+            if (this.callback == null) {
+                return;
+            }
+            try {
+                this.callback.onResponse(this.get());
+            } catch (Exception e) {
+                Log.e(TAG, "An unexpected error occured", e);
+            }
+        }
+    }
+
+    private synchronized SSLSocketFactory getSSLSocketFactory() {
+        if (this.sslSocketFactory == null) {
+            try {
+                this.sslSocketFactory = this.tlsConfiguration.getTLSSocketFactory();
+            } catch (Exception e) {
+                Log.e(TAG, "An error occured while creating the TLS socket factory", e);
+            }
+        }
+        return this.sslSocketFactory;
     }
 
     private void initializeTTLConfiguraion() {
@@ -0,0 +1,65 @@
+package org.sunbird.sync.network;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.sunbird.sync.preference.PreferenceService;
+
+import java.util.Iterator;
+
+/**
+ * Stamps the current auth tokens on a request's headers right before it is sent, so queued entries
+ * never go out with the tokens they were enqueued with. A token refresh therefore applies to the
+ * whole backlog at once.
+ *
+ * A token is only replaced on requests that were enqueued with its header, so requests meant to go
+ * out without auth, or to a host that never receives the tokens, are sent the way they were queued.
+ * The user tokens follow X-Authenticated-User-Token, since those are the calls made on behalf of a
+ * user.
+ */
+public class AuthInterceptor {
+
+    private static final String AUTHORIZATION = "Authorization";
+    private static final String USER_TOKEN = "X-Authenticated-User-Token";
+    private static final String MANAGED_USER_TOKEN = "X-Authenticated-For";
+
+    private final PreferenceService preferenceService;
+
+    public AuthInterceptor(PreferenceService preferenceService) {
+        this.preferenceService = preferenceService;
+    }
+
+    /**
+     * Returns a copy of the headers with the current tokens applied. The given headers are left
+     * untouched.
+     */
+    public JSONObject intercept(JSONObject headers) throws JSONException {
+        JSONObject interceptedHeaders = new JSONObject();
+        if (headers != null) {
+            Iterator<String> keys = headers.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                interceptedHeaders.put(key, headers.get(key));
+            }
+        }
+
+        String bearerToken = this.preferenceService.getBearerToken();
+        if (interceptedHeaders.has(AUTHORIZATION) && !isEmpty(bearerToken)) {
+            interceptedHeaders.put(AUTHORIZATION, "Bearer " + bearerToken);
+        }
+        if (interceptedHeaders.has(USER_TOKEN)) {
+            String userToken = this.preferenceService.getUserToken();
+            if (!isEmpty(userToken)) {
+                interceptedHeaders.put(USER_TOKEN, userToken);
+            }
+            String managedUserToken = this.preferenceService.getManagedUserToken();
+            if (!isEmpty(managedUserToken)) {
+                interceptedHeaders.put(MANAGED_USER_TOKEN, managedUserToken);
+            }
+        }
+        return interceptedHeaders;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.length() == 0;
+    }
+}
@@ -0,0 +1,127 @@
+package org.sunbird.sync.network;
+
+import org.sunbird.sync.model.HttpResponse;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks the health of every host requests are sent to. After a run of consecutive timeouts or
+ * server errors the host's circuit opens and requests to it are refused without touching the
+ * network. Once the open period is over a single probe request is let through: its success
+ * closes the circuit again, its failure keeps it open for another period.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public interface Listener {
+        void onStateChanged(String host, State state, long retryAt);
+    }
+
+    private static class Circuit {
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long retryAt;
+        private boolean isProbeInFlight;
+    }
+
+    private final int failureThreshold;
+    private final long openDuration;
+    private final Map<String, Circuit> circuits = new HashMap<>();
+    private Listener listener;
+
+    public CircuitBreaker(int failureThreshold, long openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Whether a request to the host may be sent now. In the half-open state only the first caller
+     * is allowed through, as the probe.
+     */
+    public boolean allowRequest(String host) {
+        boolean isAllowed;
+        boolean isHalfOpened = false;
+        long retryAt;
+        synchronized (this) {
+            Circuit circuit = getCircuit(host);
+            if (circuit.state == State.OPEN && System.currentTimeMillis() >= circuit.retryAt) {
+                circuit.state = State.HALF_OPEN;
+                isHalfOpened = true;
+            }
+            if (circuit.state == State.HALF_OPEN) {
+                isAllowed = !circuit.isProbeInFlight;
+                circuit.isProbeInFlight = true;
+            } else {
+                isAllowed = circuit.state == State.CLOSED;
+            }
+            retryAt = circuit.retryAt;
+        }
+        if (isHalfOpened) {
+            notifyStateChanged(host, State.HALF_OPEN, retryAt);
+        }
+        return isAllowed;
+    }
+
+    /**
+     * Records the outcome of a request that was allowed through. A null response, meaning the
+     * request was cancelled, and connection errors other than timeouts say nothing about the host.
+     */
+    public void onResponse(String host, HttpResponse response) {
+        State changedState = null;
+        long retryAt;
+        synchronized (this) {
+            Circuit circuit = getCircuit(host);
+            boolean isProbe = circuit.state == State.HALF_OPEN;
+            circuit.isProbeInFlight = false;
+            if (response == null || (response.getStatus() < 0 && !isFailure(response))) {
+                return;
+            }
+            if (isFailure(response)) {
+                circuit.consecutiveFailures++;
+                if (isProbe || (circuit.state == State.CLOSED && circuit.consecutiveFailures >= failureThreshold)) {
+                    circuit.state = State.OPEN;
+                    circuit.retryAt = System.currentTimeMillis() + openDuration;
+                    changedState = State.OPEN;
+                }
+            } else {
+                circuit.consecutiveFailures = 0;
+                if (circuit.state != State.CLOSED) {
+                    circuit.state = State.CLOSED;
+                    changedState = State.CLOSED;
+                }
+            }
+            retryAt = circuit.retryAt;
+        }
+        if (changedState != null) {
+            notifyStateChanged(host, changedState, retryAt);
+        }
+    }
+
+    private static boolean isFailure(HttpResponse response) {
+        return response.getStatus() == -4 || response.getStatus() >= 500;
+    }
+
+    private Circuit getCircuit(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            circuit = new Circuit();
+            circuits.put(host, circuit);
+        }
+        return circuit;
+    }
+
+    private void notifyStateChanged(String host, State state, long retryAt) {
+        Listener listener = this.listener;
+        if (listener != null) {
+            listener.onStateChanged(host, state, retryAt);
+        }
+    }
+}
@@ -7,7 +7,6 @@ import android.util.Log;
 import com.silkimen.http.HttpBodyDecoder;
 import com.silkimen.http.HttpRequest;
 import com.silkimen.http.JsonUtils;
-import com.silkimen.http.OkConnectionFactory;
 import com.silkimen.http.TLSConfiguration;
 
 import org.json.JSONException;
@@ -15,17 +14,26 @@ import org.json.JSONObject;
 import org.sunbird.sync.model.HttpResponse;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocketFactory;
 
 /**
  * Created by swayangjit on 27/3/20.
  */
 public class HttpOperation {
     protected static final String TAG = "Cordova-Plugin-SYNC";
+    private static final int STREAM_CHUNK_SIZE = 8192;
     private String method;
     private String url;
     private Object data;
@@ -35,8 +43,16 @@ public class HttpOperation {
     private int timeout = 60000;
     private boolean followRedirects = true;
     private TLSConfiguration tlsConfiguration;
+    private HttpRequest.ConnectionFactory connectionFactory;
+    private SSLSocketFactory sslSocketFactory;
+    private String compression;
+    private String contentEncoding;
+    private long bodySize;
+    private volatile HttpRequest activeRequest;
+    private volatile boolean isCancelled;
 
-    public HttpOperation(String method, String url, String serializer, Object data, JSONObject headers, TLSConfiguration tlsConfiguration) {
+    public HttpOperation(String method, String url, String serializer, Object data, JSONObject headers, TLSConfiguration tlsConfiguration,
+                         HttpRequest.ConnectionFactory connectionFactory, SSLSocketFactory sslSocketFactory) {
 
         this.method = method;
         this.url = url;
@@ -44,6 +60,41 @@ public class HttpOperation {
         this.data = data;
         this.headers = headers;
         this.tlsConfiguration = tlsConfiguration;
+        this.connectionFactory = connectionFactory;
+        this.sslSocketFactory = sslSocketFactory;
+    }
+
+    /**
+     * Sets the Content-Encoding the request body is compressed with before it is sent, either
+     * "gzip" or "deflate". The body is sent as is when this is not set.
+     */
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Aborts the request by closing its connection, which unblocks the thread running {@link #execute()}.
+     */
+    public void cancel() {
+        this.isCancelled = true;
+        HttpRequest request = this.activeRequest;
+        if (request != null) {
+            request.disconnect();
+        }
+    }
+
+    /**
+     * Marks the data as already encoded with the given Content-Encoding and Base64 encoded. It is then
+     * decoded from Base64 only and sent as is, whatever the serializer or compression. bodySize is
+     * the length of the body before it was encoded, reported as its uncompressed size when known.
+     */
+    public void setContentEncoding(String contentEncoding, long bodySize) {
+        this.contentEncoding = contentEncoding;
+        this.bodySize = bodySize;
+    }
+
+    public boolean isCancelled() {
+        return this.isCancelled;
     }
 
     public HttpResponse execute() {
@@ -51,8 +102,12 @@ public class HttpOperation {
 
         try {
             HttpRequest request = this.createRequest();
+            this.activeRequest = request;
+            if (this.isCancelled) {
+                request.disconnect();
+            }
             this.prepareRequest(request);
-            this.sendBody(request);
+            this.sendBody(request, response);
             this.processResponse(request, response);
         } catch (HttpRequest.HttpRequestException e) {
             if (e.getCause() instanceof SSLException) {
@@ -76,6 +131,8 @@ public class HttpOperation {
             response.setStatus(-1);
             response.setErrorMessage(e.getMessage());
             Log.e(TAG, "An unexpected error occured", e);
+        } finally {
+            this.activeRequest = null;
         }
         return response;
     }
@@ -89,11 +146,11 @@ public class HttpOperation {
         request.readTimeout(this.timeout);
         request.acceptCharset("UTF-8");
         request.uncompress(true);
-        HttpRequest.setConnectionFactory(new OkConnectionFactory());
+        HttpRequest.setConnectionFactory(this.connectionFactory);
         if (this.tlsConfiguration.getHostnameVerifier() != null) {
             request.setHostnameVerifier(this.tlsConfiguration.getHostnameVerifier());
         }
-        request.setSSLSocketFactory(this.tlsConfiguration.getTLSSocketFactory());
+        request.setSSLSocketFactory(this.sslSocketFactory);
         this.setContentType(request);
         request.headers(JsonUtils.getStringMap(this.headers));
     }
@@ -106,21 +163,107 @@ public class HttpOperation {
         }
     }
 
-    private void sendBody(HttpRequest request) throws Exception {
+    private void sendBody(HttpRequest request, HttpResponse response) throws Exception {
         if (this.data == null) {
             return;
         }
 
-        if ("json".equals(this.serializer)) {
-            request.send(this.data.toString());
-        } else if ("raw".equals(this.serializer)) {
-            request.send(Base64.decode((String) this.data, Base64.DEFAULT));
+        if (this.contentEncoding != null) {
+            byte[] encodedBody = Base64.decode(this.data.toString(), Base64.DEFAULT);
+            response.setRequestSize(this.bodySize > 0 ? this.bodySize : encodedBody.length, encodedBody.length, 0);
+            request.header("Content-Encoding", this.contentEncoding);
+            request.send(encodedBody);
+            return;
+        }
+
+        if (!"json".equals(this.serializer) && !"raw".equals(this.serializer)) {
+            return;
+        }
+
+        if ("gzip".equals(this.compression) || "deflate".equals(this.compression)) {
+            request.header("Content-Encoding", this.compression);
+            this.sendCompressedBody(request, response);
+            return;
+        }
+
+        byte[] body = "json".equals(this.serializer)
+                ? this.data.toString().getBytes("UTF-8") : Base64.decode((String) this.data, Base64.DEFAULT);
+        response.setRequestSize(body.length, body.length, 0);
+        request.send(body);
+    }
+
+    /**
+     * Compresses the body straight into the connection's output stream, in chunked streaming mode,
+     * so neither the encoded body nor its compressed form is ever held in memory as a whole. The
+     * compression time excludes the time spent writing to the network.
+     */
+    private void sendCompressedBody(HttpRequest request, HttpResponse response) {
+        request.chunk(STREAM_CHUNK_SIZE);
+        MeteredOutputStream sentStream;
+        MeteredOutputStream bodyStream;
+        try {
+            HttpURLConnection connection = request.getConnection();
+            connection.setDoOutput(true);
+            sentStream = new MeteredOutputStream(connection.getOutputStream());
+            bodyStream = new MeteredOutputStream("gzip".equals(this.compression)
+                    ? new GZIPOutputStream(sentStream, STREAM_CHUNK_SIZE) : new DeflaterOutputStream(sentStream));
+            try {
+                if ("json".equals(this.serializer)) {
+                    Writer writer = new OutputStreamWriter(bodyStream, "UTF-8");
+                    writer.write(this.data.toString());
+                    writer.flush();
+                } else {
+                    bodyStream.write(Base64.decode((String) this.data, Base64.DEFAULT));
+                }
+            } finally {
+                bodyStream.close();
+            }
+        } catch (IOException e) {
+            throw new HttpRequest.HttpRequestException(e);
+        }
+        long compressionTime = (bodyStream.time - sentStream.time) / 1000000;
+        response.setRequestSize(bodyStream.count, sentStream.count, Math.max(0, compressionTime));
+    }
+
+    /**
+     * Counts the bytes written through it and the time spent writing them.
+     */
+    private static class MeteredOutputStream extends FilterOutputStream {
+        private long count;
+        private long time;
+
+        private MeteredOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long startTime = System.nanoTime();
+            this.out.write(b);
+            this.time += System.nanoTime() - startTime;
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long startTime = System.nanoTime();
+            this.out.write(b, off, len);
+            this.time += System.nanoTime() - startTime;
+            this.count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            long startTime = System.nanoTime();
+            super.close();
+            this.time += System.nanoTime() - startTime;
         }
     }
 
     private void processResponse(HttpRequest request, HttpResponse response) throws Exception {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         request.receive(outputStream);
+        response.setResponseSize(outputStream.size());
 
         response.setStatus(request.code());
         response.setUrl(request.url().toString());
@@ -8,47 +8,73 @@ import org.json.JSONObject;
 
 /**
  * Created by swayangjit on 9/6/20.
+ *
+ * The tokens are parsed once into an immutable {@link Tokens} snapshot, which is replaced whenever
+ * one of the underlying preferences changes. Reading a token is then a single volatile read, with no
+ * preference lookup or JSON parsing on the sync path.
  */
 
 public class PreferenceServiceImpl implements PreferenceService {
+    private static final String KEY_BEARER_TOKEN = "api_bearer_token";
+    private static final String KEY_OAUTH_TOKEN = "oauth_token";
+
     private SharedPreferences mSharedPrefs;
+    private volatile Tokens mTokens;
+    // SharedPreferences only keeps a weak reference to its listeners, so this one is held here.
+    private final SharedPreferences.OnSharedPreferenceChangeListener mChangeListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            if (key == null || KEY_BEARER_TOKEN.equals(key) || KEY_OAUTH_TOKEN.equals(key)) {
+                mTokens = readTokens();
+            }
+        }
+    };
 
     public PreferenceServiceImpl(Context context) {
         mSharedPrefs = context.getApplicationContext().getSharedPreferences("org.ekstep.genieservices.preference_file", Context.MODE_PRIVATE);
+        mSharedPrefs.registerOnSharedPreferenceChangeListener(mChangeListener);
+        mTokens = readTokens();
     }
 
     @Override
     public String getBearerToken() {
-        return mSharedPrefs.getString("api_bearer_token", null);
+        return mTokens.bearerToken;
     }
 
     @Override
     public String getUserToken() {
-        String oauthToken = mSharedPrefs.getString("oauth_token", null);
-        if (oauthToken == null) {
-            return null;
-        }
-        try {
-            JSONObject oauthTokenJson = new JSONObject(oauthToken);
-            return oauthTokenJson.optString("access_token");
-        } catch (JSONException e) {
-            e.printStackTrace();
-            return null;
-        }
+        return mTokens.userToken;
     }
 
     @Override
     public String getManagedUserToken() {
-        String oauthToken = mSharedPrefs.getString("oauth_token", null);
+        return mTokens.managedUserToken;
+    }
+
+    private Tokens readTokens() {
+        String bearerToken = mSharedPrefs.getString(KEY_BEARER_TOKEN, null);
+        String oauthToken = mSharedPrefs.getString(KEY_OAUTH_TOKEN, null);
         if (oauthToken == null) {
-            return null;
+            return new Tokens(bearerToken, null, null);
         }
         try {
             JSONObject oauthTokenJson = new JSONObject(oauthToken);
-            return oauthTokenJson.optString("managed_access_token");
+            return new Tokens(bearerToken, oauthTokenJson.optString("access_token"), oauthTokenJson.optString("managed_access_token"));
         } catch (JSONException e) {
             e.printStackTrace();
-            return null;
+            return new Tokens(bearerToken, null, null);
+        }
+    }
+
+    private static final class Tokens {
+        private final String bearerToken;
+        private final String userToken;
+        private final String managedUserToken;
+
+        private Tokens(String bearerToken, String userToken, String managedUserToken) {
+            this.bearerToken = bearerToken;
+            this.userToken = userToken;
+            this.managedUserToken = managedUserToken;
         }
     }
 }
@@ -0,0 +1,98 @@
+package org.sunbird.sync.queue;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.sunbird.sync.db.DbService;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the deletes and column updates that settle sent entries and writes them to
+ * network_queue in groups, once enough have piled up or the oldest has waited long enough,
+ * so a large drain commits a handful of transactions instead of one per entry.
+ *
+ * Until a group is flushed a crash can cause its entries to be sent again, so callers flush
+ * at the end of every drain and before anything re-reads the table.
+ */
+public class AckBuffer {
+
+    private final DbService mDbService;
+    private final int mMaxPendingCount;
+    private final long mMaxPendingTime;
+    private final List<String> mPendingDeletes = new ArrayList<>();
+    private final Map<String, JSONObject> mPendingUpdates = new LinkedHashMap<>();
+    private long mFirstPendingAt;
+
+    public AckBuffer(DbService dbService, int maxPendingCount, long maxPendingTime) {
+        this.mDbService = dbService;
+        this.mMaxPendingCount = maxPendingCount;
+        this.mMaxPendingTime = maxPendingTime;
+    }
+
+    public synchronized void delete(String msgId) {
+        mPendingUpdates.remove(msgId);
+        mPendingDeletes.add(msgId);
+        onAdded();
+    }
+
+    /**
+     * Queues the deletes of several rows as one unit, so they are always committed together.
+     */
+    public synchronized void delete(List<String> msgIds) {
+        for (String msgId : msgIds) {
+            mPendingUpdates.remove(msgId);
+        }
+        mPendingDeletes.addAll(msgIds);
+        onAdded();
+    }
+
+    /**
+     * Queues column values to write to an entry's row; values for the same row are merged, the
+     * latest one winning.
+     */
+    public synchronized void update(String msgId, JSONObject values) throws JSONException {
+        JSONObject pendingValues = mPendingUpdates.get(msgId);
+        if (pendingValues == null) {
+            mPendingUpdates.put(msgId, values);
+        } else {
+            Iterator<String> keys = values.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                pendingValues.put(key, values.get(key));
+            }
+        }
+        onAdded();
+    }
+
+    private void onAdded() {
+        long now = System.currentTimeMillis();
+        if (mFirstPendingAt == 0) {
+            mFirstPendingAt = now;
+        }
+        if (mPendingDeletes.size() + mPendingUpdates.size() >= mMaxPendingCount || now - mFirstPendingAt >= mMaxPendingTime) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes every pending acknowledgement in one transaction. If that fails they stay pending and
+     * are retried with the next flush.
+     */
+    public synchronized void flush() {
+        if (mPendingDeletes.isEmpty() && mPendingUpdates.isEmpty()) {
+            return;
+        }
+        try {
+            mDbService.acknowledge(mPendingDeletes, mPendingUpdates);
+            mPendingDeletes.clear();
+            mPendingUpdates.clear();
+            mFirstPendingAt = 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.sunbird.sync.queue;
+
+import java.util.Random;
+
+/**
+ * Decides when a failed entry may be attempted again. The delay grows exponentially with the
+ * number of attempts from a base that depends on the kind of failure, and is jittered so that
+ * entries which failed together do not all retry at the same moment.
+ */
+public class BackoffPolicy {
+
+    private static final long NETWORK_ERROR_BASE_DELAY = 15 * 1000;
+    private static final long UNAUTHORIZED_BASE_DELAY = 5 * 1000;
+    private static final long SERVER_ERROR_BASE_DELAY = 60 * 1000;
+    private static final long CLIENT_ERROR_BASE_DELAY = 5 * 60 * 1000;
+    private static final long MAX_DELAY = 60 * 60 * 1000;
+    private static final int MAX_EXPONENT = 16;
+
+    private final Random random = new Random();
+
+    /**
+     * Returns the time, in epoch milliseconds, at which an entry that has already been attempted
+     * the given number of times may be sent again after failing with the given status.
+     */
+    public long getNextAttemptAt(int status, int attempts) {
+        long delay = Math.min(MAX_DELAY, getBaseDelay(status) << Math.min(attempts, MAX_EXPONENT));
+        long jitteredDelay = delay / 2 + (long) (random.nextDouble() * (delay / 2));
+        return System.currentTimeMillis() + jitteredDelay;
+    }
+
+    private long getBaseDelay(int status) {
+        if (status < 0) {
+            return NETWORK_ERROR_BASE_DELAY;
+        } else if (status == 401 || status == 403) {
+            return UNAUTHORIZED_BASE_DELAY;
+        } else if (status >= 500 || status == 429) {
+            return SERVER_ERROR_BASE_DELAY;
+        }
+        return CLIENT_ERROR_BASE_DELAY;
+    }
+}
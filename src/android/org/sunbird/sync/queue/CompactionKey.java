@@ -0,0 +1,68 @@
+package org.sunbird.sync.queue;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Derives the key under which entries of a type supersede each other. When an entry is enqueued
+ * with a key, every queued entry of the same type and key is dropped, so only the latest state,
+ * such as a learner's latest course_progress, is sent.
+ *
+ * Entries opt in through their config, either with a ready-made key:
+ * <pre>{"compactionKey": "user1/course1/batch1"}</pre>
+ * or with the paths of the body fields that make up the key:
+ * <pre>{"compactionKeyPaths": ["request.userId", "request.courseId", "request.batchId"]}</pre>
+ * An entry whose body lacks any of the fields gets no key and is never compacted.
+ */
+public final class CompactionKey {
+
+    private static final String SEPARATOR = "|";
+
+    private CompactionKey() {
+    }
+
+    public static String extract(Object body, String config) {
+        if (config == null || !config.contains("compactionKey")) {
+            return null;
+        }
+        try {
+            JSONObject configJson = new JSONObject(config);
+            if (!configJson.isNull("compactionKey")) {
+                return configJson.optString("compactionKey");
+            }
+            JSONArray keyPaths = configJson.optJSONArray("compactionKeyPaths");
+            if (keyPaths == null || body == null || body == JSONObject.NULL) {
+                return null;
+            }
+            JSONObject bodyJson = body instanceof JSONObject ? (JSONObject) body : new JSONObject(body.toString());
+            StringBuilder key = new StringBuilder();
+            for (int i = 0; i < keyPaths.length(); i++) {
+                Object value = resolve(bodyJson, keyPaths.getString(i));
+                if (value == null) {
+                    return null;
+                }
+                if (i > 0) {
+                    key.append(SEPARATOR);
+                }
+                key.append(value);
+            }
+            return key.toString();
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static Object resolve(JSONObject json, String path) {
+        String[] fields = path.split("\\.");
+        Object value = json;
+        for (String field : fields) {
+            if (!(value instanceof JSONObject) || ((JSONObject) value).isNull(field)) {
+                return null;
+            }
+            value = ((JSONObject) value).opt(field);
+        }
+        return value instanceof JSONObject ? null : value;
+    }
+}
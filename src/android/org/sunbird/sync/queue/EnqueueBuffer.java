@@ -0,0 +1,128 @@
+package org.sunbird.sync.queue;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds enqueued entries in memory and writes them to network_queue together, in one transaction,
+ * once enough have been added or the oldest has waited long enough. Each entry's callback fires
+ * only after the group it was written with has committed, so a reported success is durable. If the
+ * group fails to commit, its entries are written again one at a time, so only the ones that fail on
+ * their own are rejected.
+ *
+ * The buffer is bounded: the add that fills it flushes on the calling thread.
+ */
+public class EnqueueBuffer {
+
+    public interface Callback {
+        void onSuccess(long id);
+
+        void onError(String error);
+    }
+
+    public interface FlushListener {
+        void onFlushed(boolean shouldSync);
+    }
+
+    private final NetworkQueue mNetworkQueue;
+    private final ScheduledExecutorService mScheduler;
+    private final int mMaxPendingCount;
+    private final long mMaxPendingTime;
+    private final FlushListener mFlushListener;
+    private List<JSONObject> mPendingRequests = new ArrayList<>();
+    private List<Callback> mPendingCallbacks = new ArrayList<>();
+    private boolean mShouldSync;
+    private ScheduledFuture<?> mScheduledFlush;
+
+    public EnqueueBuffer(NetworkQueue networkQueue, ScheduledExecutorService scheduler, int maxPendingCount, long maxPendingTime,
+                         FlushListener flushListener) {
+        this.mNetworkQueue = networkQueue;
+        this.mScheduler = scheduler;
+        this.mMaxPendingCount = maxPendingCount;
+        this.mMaxPendingTime = maxPendingTime;
+        this.mFlushListener = flushListener;
+    }
+
+    public void add(JSONObject request, boolean shouldSync, Callback callback) {
+        boolean isFull;
+        synchronized (this) {
+            mPendingRequests.add(request);
+            mPendingCallbacks.add(callback);
+            mShouldSync |= shouldSync;
+            isFull = mPendingRequests.size() >= mMaxPendingCount;
+            if (!isFull && mScheduledFlush == null && !mScheduler.isShutdown()) {
+                mScheduledFlush = mScheduler.schedule(new Runnable() {
+                    public void run() {
+                        flush();
+                    }
+                }, mMaxPendingTime, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (isFull) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes every pending entry now and reports the outcome to their callbacks.
+     */
+    public void flush() {
+        List<JSONObject> requests;
+        List<Callback> callbacks;
+        boolean shouldSync;
+        synchronized (this) {
+            if (mScheduledFlush != null) {
+                mScheduledFlush.cancel(false);
+                mScheduledFlush = null;
+            }
+            if (mPendingRequests.isEmpty()) {
+                return;
+            }
+            requests = mPendingRequests;
+            callbacks = mPendingCallbacks;
+            shouldSync = mShouldSync;
+            mPendingRequests = new ArrayList<>();
+            mPendingCallbacks = new ArrayList<>();
+            mShouldSync = false;
+        }
+
+        try {
+            List<Long> ids = mNetworkQueue.enqueue(requests);
+            for (int i = 0; i < callbacks.size(); i++) {
+                callbacks.get(i).onSuccess(ids.get(i));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (!enqueueEach(requests, callbacks)) {
+                return;
+            }
+        }
+        mFlushListener.onFlushed(shouldSync);
+    }
+
+    /**
+     * Writes the entries one by one. Returns whether any of them was written.
+     */
+    private boolean enqueueEach(List<JSONObject> requests, List<Callback> callbacks) {
+        boolean isAnyEnqueued = false;
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                long id = mNetworkQueue.enqueue(requests.get(i));
+                if (id == -1) {
+                    callbacks.get(i).onError("Failed to insert into network_queue: " + requests.get(i).optString("msg_id"));
+                } else {
+                    callbacks.get(i).onSuccess(id);
+                    isAnyEnqueued = true;
+                }
+            } catch (Exception e) {
+                callbacks.get(i).onError(e.getMessage());
+            }
+        }
+        return isAnyEnqueued;
+    }
+}
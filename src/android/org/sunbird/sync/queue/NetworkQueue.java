@@ -1,6 +1,11 @@
 package org.sunbird.sync.queue;
 
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.sunbird.sync.model.NetworkQueueModel;
+import org.sunbird.sync.model.Request;
+
+import java.util.List;
 
 /**
  * Created by swayangjit on 26/3/20.
@@ -9,12 +14,36 @@ public interface NetworkQueue {
 
     void seed();
 
-    NetworkQueueModel dequeue(boolean isSoft);
+    long enqueue(JSONObject request) throws JSONException;
+
+    List<Long> enqueue(List<JSONObject> requests) throws JSONException;
+
+    List<String> getTypes();
+
+    NetworkQueueModel poll(String type);
+
+    List<NetworkQueueModel> poll(String type, int maxEventCount, long maxSize);
+
+    void dequeue(NetworkQueueModel networkQueueModel, boolean isSoft);
+
+    void dequeue(List<NetworkQueueModel> networkQueueModels);
 
-    NetworkQueueModel peek();
+    void reschedule(NetworkQueueModel networkQueueModel, long nextAttemptAt, int lastStatus);
+
+    void update(NetworkQueueModel networkQueueModel, JSONObject values) throws JSONException;
+
+    long getNextAttemptAt(long since);
+
+    void flush();
+
+    void migrateLegacyBodies();
+
+    Request loadRequest(NetworkQueueModel networkQueueModel);
 
     int getSize();
 
     boolean isEmpty();
+
+    boolean isEmpty(String type);
     
 }
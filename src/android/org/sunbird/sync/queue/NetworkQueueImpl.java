@@ -3,82 +3,462 @@ package org.sunbird.sync.queue;
 import android.util.Log;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.sunbird.sync.db.DbService;
+import org.sunbird.sync.db.PayloadCodec;
 import org.sunbird.sync.model.NetworkQueueModel;
 import org.sunbird.sync.model.Request;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
 
 /**
  * Created by swayangjit on 26/3/20.
  */
 public class NetworkQueueImpl implements NetworkQueue {
-    private PriorityQueue<NetworkQueueModel> mPriorityNetworkModelQueue = new PriorityQueue<>();
+    private static final int SEED_PAGE_SIZE = 50;
+    private static final int ACK_BATCH_SIZE = 50;
+    private static final long ACK_BATCH_WINDOW = 2000;
+    private static final int MIGRATION_BATCH_SIZE = 20;
+    private Map<String, Lane> mLanes = new HashMap<>();
     private DbService mDbService;
+    private AckBuffer mAckBuffer;
+    private boolean mIsSeeded;
+    private boolean mIsInvalidated;
 
     public NetworkQueueImpl(DbService dbService) {
         this.mDbService = dbService;
+        this.mAckBuffer = new AckBuffer(dbService, ACK_BATCH_SIZE, ACK_BATCH_WINDOW);
     }
 
+    /**
+     * The slice of the index holding one type's due entries. Each lane pages through its own rows,
+     * so a large telemetry backlog never has to be read to reach a course_progress entry. Entries
+     * that are not due yet are left in the database; seededAt is when the lane started paging, so
+     * the ones that have become due since can be found.
+     */
+    private static class Lane {
+        private final String type;
+        private final PriorityQueue<NetworkQueueModel> queue = new PriorityQueue<>();
+        private NetworkQueueModel lastSeededModel;
+        private boolean hasMoreRows;
+        private long seededAt;
+        private boolean isStale;
+
+        private Lane(String type, boolean hasMoreRows, long seededAt) {
+            this.type = type;
+            this.hasMoreRows = hasMoreRows;
+            this.seededAt = seededAt;
+        }
+    }
+
+    /**
+     * Builds the in-memory index from the database on cold start, or after {@link #loadRequest(NetworkQueueModel)}
+     * found it out of sync with network_queue. Otherwise the index is kept up to date by
+     * {@link #enqueue(JSONObject)} and {@link #dequeue(NetworkQueueModel, boolean)}, and seeding only
+     * pages again, from the start, the lanes that have entries back in the queue: soft dequeued ones,
+     * and rescheduled ones that are due by now.
+     */
     @Override
-    public void seed() {
+    public synchronized void seed() {
+        mAckBuffer.flush();
+        long now = System.currentTimeMillis();
+        if (mIsSeeded && !mIsInvalidated) {
+            try {
+                long since = now;
+                for (Lane lane : mLanes.values()) {
+                    since = Math.min(since, lane.seededAt);
+                }
+                JSONArray resultArray = mDbService.readTypesDueSince(since, now);
+                for (int i = 0; resultArray != null && i < resultArray.length(); i++) {
+                    String type = resultArray.getJSONObject(i).optString("type");
+                    Lane lane = mLanes.get(type);
+                    if (lane == null) {
+                        lane = new Lane(type, true, now);
+                        mLanes.put(type, lane);
+                    }
+                    lane.isStale = true;
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            for (Lane lane : mLanes.values()) {
+                if (lane.isStale) {
+                    lane.queue.clear();
+                    lane.lastSeededModel = null;
+                    lane.hasMoreRows = true;
+                    lane.seededAt = now;
+                    lane.isStale = false;
+                    seedNextPage(lane);
+                }
+            }
+            return;
+        }
+        mLanes = new HashMap<>();
+        try {
+            JSONArray resultArray = mDbService.readTypes();
+            if (resultArray != null) {
+                for (int i = 0; i < resultArray.length(); i++) {
+                    String type = resultArray.getJSONObject(i).optString("type");
+                    Lane lane = new Lane(type, true, now);
+                    mLanes.put(type, lane);
+                    seedNextPage(lane);
+                }
+            }
+            mIsSeeded = true;
+            mIsInvalidated = false;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void seedNextPage(Lane lane) {
         try {
-            mPriorityNetworkModelQueue = new PriorityQueue<>();
-            JSONArray resultArray = mDbService.seed();
+            JSONArray resultArray = mDbService.seed(lane.type, lane.lastSeededModel, SEED_PAGE_SIZE, System.currentTimeMillis());
+            lane.hasMoreRows = resultArray != null && resultArray.length() == SEED_PAGE_SIZE;
             if (resultArray != null) {
                 for (int i = 0; i < resultArray.length(); i++) {
                     JSONObject jsonObject = resultArray.getJSONObject(i);
-                    String requestStr = jsonObject.optString("request");
-                    Long id = jsonObject.optLong("_id");
-                    String msgId = jsonObject.optString("msg_id");
-                    String type = jsonObject.optString("type");
-                    Integer priority = jsonObject.optInt("priority");
-                    Integer eventCount = jsonObject.optInt("item_count");
-                    String timestamp = jsonObject.optString("timestamp");
-                    String config = jsonObject.optString("config");
-                    JSONObject requestJson = new JSONObject(requestStr);
-                    String host = requestJson.optString("host");
-                    Object body = requestJson.get("body");
-                    String path = requestJson.optString("path");
-                    String requestType = requestJson.optString("type");
-                    String serializer = requestJson.optString("serializer");
-                    int noOfFailureSync = requestJson.optInt("noOfFailureSync", 0);
-                    JSONObject headers = requestJson.optJSONObject("headers");
-                    Request request = new Request(host, path, requestType, headers, serializer, body);
-                    request.setNoOfFailureSync(noOfFailureSync);
-                    NetworkQueueModel networkQueueModel = new NetworkQueueModel(msgId, type, priority, Long.valueOf(timestamp), config, eventCount, request);
-                    mPriorityNetworkModelQueue.add(networkQueueModel);
+                    NetworkQueueModel networkQueueModel = toNetworkQueueModel(jsonObject.optLong("_id"), jsonObject, jsonObject.optLong("size"));
+                    lane.queue.add(networkQueueModel);
+                    lane.lastSeededModel = networkQueueModel;
                 }
             }
         } catch (Exception e) {
+            lane.hasMoreRows = false;
             e.printStackTrace();
         }
     }
 
+    private NetworkQueueModel toNetworkQueueModel(long id, JSONObject jsonObject, Long size) {
+        String msgId = jsonObject.optString("msg_id");
+        String type = jsonObject.optString("type");
+        Integer priority = jsonObject.optInt("priority");
+        Integer eventCount = jsonObject.optInt("item_count");
+        String timestamp = jsonObject.optString("timestamp");
+        String config = jsonObject.optString("config");
+        NetworkQueueModel networkQueueModel = new NetworkQueueModel(id, msgId, type, priority, Long.valueOf(timestamp), config, eventCount, size);
+        networkQueueModel.setRetry(jsonObject.optInt("attempts", 0), jsonObject.optLong("next_attempt_at", 0));
+        networkQueueModel.setCompactionKey(jsonObject.isNull("compaction_key") ? null : jsonObject.optString("compaction_key"));
+        if (!jsonObject.isNull("schedule_rank")) {
+            networkQueueModel.setScheduleRank(jsonObject.optLong("schedule_rank"));
+        }
+        return networkQueueModel;
+    }
+
+    /**
+     * Pulls the lane's next window from the database once the rows already in memory have been drained.
+     */
+    private void ensureSeeded(Lane lane) {
+        if (mIsSeeded && lane.queue.isEmpty() && lane.hasMoreRows) {
+            seedNextPage(lane);
+        }
+    }
+
+    /**
+     * Whether the entry sorts within the window already read for its lane. Entries past the
+     * window are left for paging to pick up, so adding them here would load them twice.
+     */
+    private boolean isWithinSeededWindow(Lane lane, NetworkQueueModel networkQueueModel) {
+        NetworkQueueModel lastSeededModel = lane.lastSeededModel;
+        if (!lane.hasMoreRows || lastSeededModel == null) {
+            return true;
+        }
+        return networkQueueModel.compareTo(lastSeededModel) < 0;
+    }
+
     @Override
-    public NetworkQueueModel dequeue(boolean isSoft) {
-        if (mPriorityNetworkModelQueue != null) {
-            try {
-                NetworkQueueModel networkQueueModel = mPriorityNetworkModelQueue.poll();
-                if(!isSoft){
-                    mDbService.delete(networkQueueModel.getId());
+    public synchronized long enqueue(JSONObject request) throws JSONException {
+        putScheduleRank(request);
+        long id = mDbService.insert(request);
+        index(id, request);
+        return id;
+    }
+
+    /**
+     * Inserts all the entries in one transaction and indexes them once it has committed.
+     */
+    @Override
+    public synchronized List<Long> enqueue(List<JSONObject> requests) throws JSONException {
+        for (JSONObject request : requests) {
+            putScheduleRank(request);
+        }
+        List<Long> ids = mDbService.insert(requests);
+        for (int i = 0; i < ids.size(); i++) {
+            index(ids.get(i), requests.get(i));
+        }
+        return ids;
+    }
+
+    private void putScheduleRank(JSONObject request) throws JSONException {
+        request.put("schedule_rank", NetworkQueueModel.getScheduleRank(request.optInt("priority"), request.optLong("timestamp")));
+    }
+
+    private void index(long id, JSONObject request) {
+        if (!mIsSeeded || id == -1) {
+            return;
+        }
+        long size = request.optString("request").length() + request.optString("body").length();
+        NetworkQueueModel networkQueueModel = toNetworkQueueModel(id, request, size);
+        Lane lane = mLanes.get(networkQueueModel.getType());
+        if (lane == null) {
+            lane = new Lane(networkQueueModel.getType(), false, System.currentTimeMillis());
+            mLanes.put(lane.type, lane);
+        }
+        removeSuperseded(lane, networkQueueModel);
+        if (isWithinSeededWindow(lane, networkQueueModel)) {
+            lane.queue.add(networkQueueModel);
+        }
+    }
+
+    /**
+     * Drops the indexed entries a newly enqueued one replaces; their rows were deleted along with its insert.
+     */
+    private void removeSuperseded(Lane lane, NetworkQueueModel networkQueueModel) {
+        if (networkQueueModel.getCompactionKey() == null) {
+            return;
+        }
+        Iterator<NetworkQueueModel> iterator = lane.queue.iterator();
+        while (iterator.hasNext()) {
+            NetworkQueueModel indexedModel = iterator.next();
+            if (networkQueueModel.getCompactionKey().equals(indexedModel.getCompactionKey())
+                    && indexedModel.getRowId() < networkQueueModel.getRowId()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized List<String> getTypes() {
+        return new ArrayList<>(mLanes.keySet());
+    }
+
+    @Override
+    public synchronized NetworkQueueModel poll(String type) {
+        Lane lane = mLanes.get(type);
+        if (lane == null) {
+            return null;
+        }
+        ensureSeeded(lane);
+        return lane.queue.poll();
+    }
+
+    /**
+     * Claims the head of a lane together with the entries queued right behind it, for as long as their
+     * combined item_count and stored size stay within the limits. The head is always claimed.
+     */
+    @Override
+    public synchronized List<NetworkQueueModel> poll(String type, int maxEventCount, long maxSize) {
+        List<NetworkQueueModel> networkQueueModels = new ArrayList<>();
+        Lane lane = mLanes.get(type);
+        if (lane == null) {
+            return networkQueueModels;
+        }
+        int eventCount = 0;
+        long size = 0;
+        while (true) {
+            ensureSeeded(lane);
+            NetworkQueueModel networkQueueModel = lane.queue.peek();
+            if (networkQueueModel == null) {
+                break;
+            }
+            eventCount += networkQueueModel.getEventCount();
+            size += networkQueueModel.getSize();
+            if (!networkQueueModels.isEmpty() && (eventCount > maxEventCount || size > maxSize)) {
+                break;
+            }
+            networkQueueModels.add(lane.queue.poll());
+        }
+        return networkQueueModels;
+    }
+
+    /**
+     * Settles an entry claimed through {@link #poll(String)}. A soft dequeue keeps the row, and its
+     * lane is paged again on the next seed to pick it back up; otherwise the row is deleted.
+     */
+    @Override
+    public synchronized void dequeue(NetworkQueueModel networkQueueModel, boolean isSoft) {
+        try {
+            if (isSoft) {
+                Lane lane = mLanes.get(networkQueueModel.getType());
+                if (lane != null) {
+                    lane.isStale = true;
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
+            } else {
+                mAckBuffer.delete(networkQueueModel.getId());
             }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Settles a claimed entry that failed: its attempt count, the status it failed with and the time it
+     * may be retried are persisted, and it stays out of memory until a seed finds it due.
+     */
+    @Override
+    public synchronized void reschedule(NetworkQueueModel networkQueueModel, long nextAttemptAt, int lastStatus) {
+        int attempts = networkQueueModel.getAttempts() + 1;
+        try {
+            JSONObject model = new JSONObject();
+            model.put("attempts", attempts);
+            model.put("next_attempt_at", nextAttemptAt);
+            model.put("last_status", lastStatus);
+            mAckBuffer.update(networkQueueModel.getId(), model);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes typed columns of an entry's row, such as failure_count. These are
+     * small single-column writes batched with the acknowledgements, whatever the size of the body.
+     */
+    @Override
+    public void update(NetworkQueueModel networkQueueModel, JSONObject values) throws JSONException {
+        mAckBuffer.update(networkQueueModel.getId(), values);
+    }
+
+    /**
+     * The earliest retry time among the entries rescheduled for later than since. It is in the past
+     * when such an entry is already due.
+     */
+    @Override
+    public long getNextAttemptAt(long since) {
+        try {
+            return mDbService.readNextAttemptAt(since);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Deletes the rows of several claimed entries as one unit, so a coalesced request is acknowledged atomically.
+     */
+    @Override
+    public void dequeue(List<NetworkQueueModel> networkQueueModels) {
+        List<String> msgIds = new ArrayList<>();
+        for (NetworkQueueModel networkQueueModel : networkQueueModels) {
+            msgIds.add(networkQueueModel.getId());
+        }
+        mAckBuffer.delete(msgIds);
+    }
+
+    @Override
+    public void flush() {
+        mAckBuffer.flush();
+    }
+
+    /**
+     * Reads the request of a single entry from the database. The queue only holds metadata, so the
+     * returned request (body included) is owned by the caller and should not outlive the send.
+     * A missing row means the index no longer matches network_queue, so the next seed rescans it.
+     * The current drain keeps paging meanwhile, so the rows past the window are still reached.
+     */
+    @Override
+    public Request loadRequest(NetworkQueueModel networkQueueModel) {
+        try {
+            JSONObject row = mDbService.readRequest(networkQueueModel.getId());
+            if (row == null) {
+                invalidate();
+                return null;
+            }
+            JSONObject requestJson = new JSONObject(row.optString("request"));
+            boolean isBodyInEnvelope = row.isNull("body_codec") && row.isNull("body");
+            Object body = isBodyInEnvelope ? requestJson.opt("body") : (row.isNull("body") ? null : row.optString("body"));
+            String host = requestJson.optString("host");
+            String path = requestJson.optString("path");
+            String requestType = requestJson.optString("type");
+            String serializer = requestJson.optString("serializer");
+            int noOfFailureSync = Math.max(requestJson.optInt("noOfFailureSync", 0), row.optInt("failure_count", 0));
+            JSONObject headers = requestJson.optJSONObject("headers");
+            Request request = new Request(host, path, requestType, headers, serializer, body);
+            request.setNoOfFailureSync(noOfFailureSync);
+            request.setContentEncoding(PayloadCodec.getContentEncoding(row.optString("body_codec")));
+            request.setBodySize(row.optLong("body_size", 0));
+            request.setCompression(getCompression(networkQueueModel));
+            return request;
+        } catch (Exception e) {
+            e.printStackTrace();
         }
         return null;
     }
 
+    /**
+     * Moves the bodies of rows written before the body column existed out of their request envelopes
+     * and into the body column, in the storage format their config calls for. Runs in small
+     * transactional batches until no such rows are left.
+     */
     @Override
-    public NetworkQueueModel peek() {
-        return mPriorityNetworkModelQueue != null ? mPriorityNetworkModelQueue.peek() : null;
+    public void migrateLegacyBodies() {
+        try {
+            JSONArray resultArray;
+            while ((resultArray = mDbService.readLegacyBodies(MIGRATION_BATCH_SIZE)) != null && resultArray.length() > 0) {
+                Map<String, JSONObject> updatesByMsgId = new LinkedHashMap<>();
+                for (int i = 0; i < resultArray.length(); i++) {
+                    JSONObject row = resultArray.getJSONObject(i);
+                    JSONObject values = new JSONObject();
+                    if (row.isNull("body")) {
+                        JSONObject requestJson = new JSONObject(row.optString("request"));
+                        Object body = requestJson.remove("body");
+                        String codec = PayloadCodec.getCodec(requestJson.optString("serializer"), getCompression(row.optString("config")));
+                        if (body != null && body != JSONObject.NULL) {
+                            values.put("body", PayloadCodec.encode(body.toString(), codec));
+                            if (PayloadCodec.GZIP.equals(codec)) {
+                                values.put("body_size", body.toString().getBytes("UTF-8").length);
+                            }
+                        }
+                        values.put("request", requestJson.toString());
+                        values.put("body_codec", codec);
+                    } else {
+                        values.put("body_codec", PayloadCodec.IDENTITY);
+                    }
+                    updatesByMsgId.put(row.optString("msg_id"), values);
+                }
+                mDbService.acknowledge(Collections.<String>emptyList(), updatesByMsgId);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private String getCompression(String config) {
+        try {
+            return config != null && !config.isEmpty() ? new JSONObject(config).optString("compression", null) : null;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private String getCompression(NetworkQueueModel networkQueueModel) {
+        try {
+            JSONObject config = networkQueueModel.getConfig();
+            return config != null ? config.optString("compression", null) : null;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private synchronized void invalidate() {
+        mIsInvalidated = true;
     }
 
     @Override
-    public int getSize() {
-        return mPriorityNetworkModelQueue.size();
+    public synchronized int getSize() {
+        int size = 0;
+        for (Lane lane : mLanes.values()) {
+            ensureSeeded(lane);
+            size += lane.queue.size();
+        }
+        return size;
     }
 
     @Override
@@ -86,4 +466,17 @@ public class NetworkQueueImpl implements NetworkQueue {
         return getSize() == 0;
     }
 
+    /**
+     * Whether the lane of the given type has no due entry left to claim.
+     */
+    @Override
+    public synchronized boolean isEmpty(String type) {
+        Lane lane = mLanes.get(type);
+        if (lane == null) {
+            return true;
+        }
+        ensureSeeded(lane);
+        return lane.queue.isEmpty();
+    }
+
 }
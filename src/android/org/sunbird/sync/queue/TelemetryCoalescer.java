@@ -0,0 +1,168 @@
+package org.sunbird.sync.queue;
+
+import android.util.Base64;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.sunbird.sync.model.Request;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Merges the bodies of several telemetry requests for the same endpoint into a single request
+ * carrying all of their events, so a backlog goes out in a few round-trips instead of one per entry.
+ * Bodies stored already encoded are never merged, so they go out as they were stored, without being
+ * decompressed on the device.
+ */
+public class TelemetryCoalescer {
+
+    private static final String EVENTS = "events";
+
+    private final int maxEventCount;
+    private final long maxSize;
+
+    public TelemetryCoalescer(int maxEventCount, long maxSize) {
+        this.maxEventCount = maxEventCount;
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxEventCount() {
+        return maxEventCount;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Whether the two requests can go out as one. Neither may have a body stored already encoded, and
+     * raw bodies have to agree on being gzipped, since the merged body is gzipped again only if they were.
+     */
+    public boolean canMerge(Request first, Request other) {
+        String compression = first.getCompression();
+        return first.getContentEncoding() == null && other.getContentEncoding() == null
+                && first.getHost().equals(other.getHost())
+                && first.getPath().equals(other.getPath())
+                && first.getSerializer().equals(other.getSerializer())
+                && (compression == null ? other.getCompression() == null : compression.equals(other.getCompression()))
+                && (!"raw".equals(first.getSerializer()) || isGzip(first) == isGzip(other));
+    }
+
+    /**
+     * Returns a request whose body holds the events of all the given requests, in order, with the
+     * envelope and headers of the first one. Returns null when a body is not a telemetry batch.
+     */
+    public Request merge(List<Request> requests) {
+        Request first = requests.get(0);
+        try {
+            boolean isRaw = "raw".equals(first.getSerializer());
+            boolean isGzipped = isRaw && isGzip(first);
+            JSONObject merged = null;
+            JSONArray events = new JSONArray();
+            for (Request request : requests) {
+                JSONObject body;
+                if (request.getContentEncoding() != null) {
+                    return null;
+                } else if (isRaw) {
+                    byte[] data = Base64.decode((String) request.getBody(), Base64.DEFAULT);
+                    if (isGzip(data) != isGzipped) {
+                        return null;
+                    }
+                    body = new JSONObject(new String(isGzipped ? gunzip(data) : data, "UTF-8"));
+                } else if (request.getBody() instanceof JSONObject) {
+                    body = (JSONObject) request.getBody();
+                } else {
+                    body = new JSONObject(request.getBody().toString());
+                }
+                JSONArray bodyEvents = body.optJSONArray(EVENTS);
+                if (bodyEvents == null) {
+                    return null;
+                }
+                if (merged == null) {
+                    merged = copyEnvelope(body);
+                }
+                for (int i = 0; i < bodyEvents.length(); i++) {
+                    events.put(bodyEvents.get(i));
+                }
+            }
+            merged.put(EVENTS, events);
+
+            Object mergedBody = merged;
+            if (isRaw) {
+                byte[] data = merged.toString().getBytes("UTF-8");
+                mergedBody = Base64.encodeToString(isGzipped ? gzip(data) : data, Base64.NO_WRAP);
+            }
+            Request mergedRequest = new Request(first.getHost(), first.getPath(), first.getType(), first.getHeaders(), first.getSerializer(), mergedBody);
+            mergedRequest.setCompression(first.getCompression());
+            return mergedRequest;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static JSONObject copyEnvelope(JSONObject body) throws JSONException {
+        JSONObject envelope = new JSONObject();
+        Iterator<String> keys = body.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!EVENTS.equals(key)) {
+                envelope.put(key, body.get(key));
+            }
+        }
+        return envelope;
+    }
+
+    /**
+     * Checks the gzip magic of a raw body from its first Base64 quantum, without decoding the rest.
+     */
+    private static boolean isGzip(Request request) {
+        Object body = request.getBody();
+        if (!(body instanceof String) || ((String) body).length() < 4) {
+            return false;
+        }
+        try {
+            return isGzip(Base64.decode(((String) body).substring(0, 4), Base64.DEFAULT));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean isGzip(byte[] data) {
+        return data.length > 2 && data[0] == (byte) 0x1f && data[1] == (byte) 0x8b;
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        try {
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+        } finally {
+            inputStream.close();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+        try {
+            gzipOutputStream.write(data);
+        } finally {
+            gzipOutputStream.close();
+        }
+        return outputStream.toByteArray();
+    }
+}
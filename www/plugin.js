@@ -10,8 +10,17 @@ var sbsync = {
     enqueue: function(data, model, shouldSync, success, error) {
           exec(success, error, PLUGIN_NAME, "enqueue", [data, model, shouldSync]);
     },
+    enqueueBatch: function(items, shouldSync, success, error) {
+          exec(success, error, PLUGIN_NAME, "enqueueBatch", [items, shouldSync]);
+    },
     onSyncSucces: function(success, error) {
         exec(success, error, PLUGIN_NAME, "onSyncSucces", []);
+    },
+    subscribeSyncEvents: function(success, error) {
+        exec(success, error, PLUGIN_NAME, "subscribeSyncEvents", []);
+    },
+    getSyncStats: function(success, error) {
+        exec(success, error, PLUGIN_NAME, "getSyncStats", []);
     }
 };
 